@@ -37,6 +37,7 @@ android {
 
 dependencies {
 
+    implementation(project(":protocol"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
@@ -0,0 +1,121 @@
+package net.lasertag;
+
+import static net.lasertag.Config.TAG;
+import static org.junit.Assert.assertTrue;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import net.lasertag.model.EventMessage;
+import net.lasertag.model.UdpMessages;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end delivery latency from a background thread to the main thread, through the
+ * {@link MessageChannel} the service uses and through the Serializable Intent broadcast it replaced.
+ * Messages are sent one at a time, each after the previous one arrived, so the numbers are per-message
+ * latency rather than queueing. Results go to the log as percentiles.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DeliveryLatencyTest {
+
+    private static final String ACTION = "net.lasertag.test.UDP_MESSAGE_RECEIVED";
+    private static final int WARMUP = 100;
+    private static final int MESSAGES = 1000;
+    private static final long PAUSE_MICROS = 500;
+
+    private final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    @Test
+    public void channelDeliversFasterThanBroadcast() throws Exception {
+        var channel = measureChannel();
+        var broadcast = measureBroadcast();
+        Log.i(TAG, "Delivery latency, channel: " + percentiles(channel) + ", broadcast: " + percentiles(broadcast));
+        assertTrue(channel[channel.length / 2] < broadcast[broadcast.length / 2]);
+    }
+
+    private long[] measureChannel() throws Exception {
+        var latencies = new long[WARMUP + MESSAGES];
+        var delivered = new Semaphore(0);
+        var count = new int[1];
+        var channel = new MessageChannel[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> channel[0] = new MessageChannel(mainHandler, message -> {
+            latencies[count[0]++] = System.nanoTime() - message.getReceivedNanos();
+            delivered.release();
+        }));
+        var message = newEvent();
+        for (int i = 0; i < latencies.length; i++) {
+            message.setReceivedNanos(System.nanoTime());
+            channel[0].offer(message);
+            awaitDelivery(delivered);
+        }
+        return skipWarmup(latencies);
+    }
+
+    private long[] measureBroadcast() throws Exception {
+        var latencies = new long[WARMUP + MESSAGES];
+        var delivered = new Semaphore(0);
+        var count = new int[1];
+        var receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                var message = (EventMessage) intent.getSerializableExtra("message");
+                latencies[count[0]++] = System.nanoTime() - message.getReceivedNanos();
+                delivered.release();
+            }
+        };
+        ContextCompat.registerReceiver(context, receiver, new IntentFilter(ACTION), null, mainHandler,
+                ContextCompat.RECEIVER_NOT_EXPORTED);
+        try {
+            var message = newEvent();
+            for (int i = 0; i < latencies.length; i++) {
+                message.setReceivedNanos(System.nanoTime());
+                var intent = new Intent(ACTION).setPackage(context.getPackageName());
+                intent.putExtra("message", message);
+                context.sendBroadcast(intent);
+                awaitDelivery(delivered);
+            }
+        } finally {
+            context.unregisterReceiver(receiver);
+        }
+        return skipWarmup(latencies);
+    }
+
+    private static void awaitDelivery(Semaphore delivered) throws InterruptedException {
+        assertTrue(delivered.tryAcquire(5, TimeUnit.SECONDS));
+        TimeUnit.MICROSECONDS.sleep(PAUSE_MICROS);
+    }
+
+    private static EventMessage newEvent() {
+        return new EventMessage(UdpMessages.GOT_HIT, (byte) 2, (byte) 80, (byte) 3, (byte) 17);
+    }
+
+    private static long[] skipWarmup(long[] latencies) {
+        var measured = Arrays.copyOfRange(latencies, WARMUP, latencies.length);
+        Arrays.sort(measured);
+        return measured;
+    }
+
+    private static String percentiles(long[] sorted) {
+        return "p50=" + sorted[sorted.length / 2] / 1000 + "us"
+                + " p90=" + sorted[sorted.length * 9 / 10] / 1000 + "us"
+                + " p99=" + sorted[sorted.length * 99 / 100] / 1000 + "us"
+                + " max=" + sorted[sorted.length - 1] / 1000 + "us";
+    }
+}
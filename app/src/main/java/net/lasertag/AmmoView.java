@@ -0,0 +1,70 @@
+package net.lasertag;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.core.content.res.ResourcesCompat;
+
+/**
+ * Draws the remaining bullets as a vertical stack of bullet icons in a single pass, without child views.
+ * When the magazine does not fit, the icons are packed closer together instead of growing the view.
+ */
+public class AmmoView extends View {
+
+    private final Drawable bullet;
+    private int bulletsLeft = 0;
+
+    public AmmoView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        bullet = ResourcesCompat.getDrawable(context.getResources(), R.drawable.bullet, null);
+    }
+
+    public void setBulletsLeft(int bulletsLeft) {
+        bulletsLeft = Math.max(0, bulletsLeft);
+        if (bulletsLeft == this.bulletsLeft) {
+            return;
+        }
+        this.bulletsLeft = bulletsLeft;
+        invalidate();
+    }
+
+    public int getBulletsLeft() {
+        return bulletsLeft;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (bulletsLeft == 0 || bullet == null) {
+            return;
+        }
+        int availableWidth = getWidth() - getPaddingLeft() - getPaddingRight();
+        int availableHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+        int intrinsicWidth = bullet.getIntrinsicWidth();
+        int intrinsicHeight = bullet.getIntrinsicHeight();
+
+        // scale down to the view width, keeping the aspect ratio, like an ImageView would
+        float scale = intrinsicWidth > availableWidth ? (float) availableWidth / intrinsicWidth : 1f;
+        int width = (int) (intrinsicWidth * scale);
+        int height = (int) (intrinsicHeight * scale);
+        int step = intrinsicHeight;
+        if (step * bulletsLeft > availableHeight) {
+            step = Math.max(1, availableHeight / bulletsLeft);
+            if (height > step) {
+                width = width * step / height;
+                height = step;
+            }
+        }
+
+        int left = getPaddingLeft();
+        int top = getPaddingTop() + (step - height) / 2;
+        for (int i = 0; i < bulletsLeft; i++) {
+            bullet.setBounds(left, top, left + width, top + height);
+            bullet.draw(canvas);
+            top += step;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package net.lasertag;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+
+import net.lasertag.model.UdpMessage;
+import net.lasertag.model.UdpMessages;
+
+import java.util.Arrays;
+
+/**
+ * Plays event sounds on a dedicated audio-priority thread, fed straight from the network thread so a
+ * sound never waits behind UI work on the main looper.
+ * <p>
+ * Requests travel as pooled {@link Message}s carrying the type and receive time, never the decoded
+ * message itself, so dispatching does not allocate or hold on to a pooled message. Rapidly repeated sounds,
+ * like automatic fire, are rate limited here before they can crowd out the rarer, more important ones.
+ * Until the sound manager is handed over and a sample has loaded, its sound is skipped and counted.
+ */
+public class AudioDispatcher implements Handler.Callback {
+
+    private static final long MILLIS = 1_000_000L;
+    /** Minimum time between two plays of the same sound, indexed by SoundManager sound. */
+    private static final long[] MIN_INTERVAL_NANOS = {
+            60 * MILLIS, 0, 0, 150 * MILLIS, 0, 0, 0, 0, 0, 0
+    };
+
+    private static final int SET_SOUND_MANAGER = 256;
+
+    private SoundManager soundManager;
+    private boolean released = false;
+    private long skippedNotReady = 0;
+    private final LatencyTracker latencyTracker;
+    private final HandlerThread thread = new HandlerThread("Audio", Process.THREAD_PRIORITY_URGENT_AUDIO);
+    private final Handler handler;
+    private final int[] soundByType = new int[256];
+    private final long[] lastPlayedNanos = new long[SoundManager.SOUNDS];
+
+    public AudioDispatcher(LatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+        Arrays.fill(soundByType, -1);
+        soundByType[UdpMessages.GUN_SHOT] = SoundManager.GUN_SHOT;
+        soundByType[UdpMessages.GUN_RELOAD] = SoundManager.RELOAD;
+        soundByType[UdpMessages.YOU_HIT_SOMEONE] = SoundManager.YOU_HIT_SOMEONE;
+        soundByType[UdpMessages.GOT_HIT] = SoundManager.GOT_HIT;
+        soundByType[UdpMessages.RESPAWN] = SoundManager.RESPAWN;
+        soundByType[UdpMessages.GAME_OVER] = SoundManager.GAME_OVER;
+        soundByType[UdpMessages.GAME_START] = SoundManager.GAME_START;
+        soundByType[UdpMessages.YOU_KILLED] = SoundManager.YOU_KILLED;
+        soundByType[UdpMessages.YOU_SCORED] = SoundManager.YOU_SCORED;
+        soundByType[UdpMessages.GUN_NO_BULLETS] = SoundManager.NO_BULLETS;
+        thread.start();
+        handler = new Handler(thread.getLooper(), this);
+    }
+
+    /**
+     * Queues the sound for the message type, if it has one. Safe to call from any thread.
+     */
+    public void dispatch(UdpMessage message) {
+        int type = message.getType() & 0xFF;
+        if (soundByType[type] < 0) {
+            return;
+        }
+        long receivedNanos = message.getReceivedNanos();
+        handler.sendMessage(handler.obtainMessage(type, (int) (receivedNanos >>> 32), (int) receivedNanos));
+    }
+
+    /**
+     * Hands over the sound manager, which this dispatcher then owns. Safe to call from any thread.
+     */
+    public void setSoundManager(SoundManager soundManager) {
+        handler.sendMessage(handler.obtainMessage(SET_SOUND_MANAGER, soundManager));
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        if (msg.what == SET_SOUND_MANAGER) {
+            soundManager = (SoundManager) msg.obj;
+            if (released) {
+                soundManager.release();
+            }
+            return true;
+        }
+        int sound = soundByType[msg.what];
+        if (soundManager == null || !soundManager.isLoaded(sound)) {
+            skippedNotReady++;
+            return true;
+        }
+        long now = System.nanoTime();
+        if (MIN_INTERVAL_NANOS[sound] > 0 && now - lastPlayedNanos[sound] < MIN_INTERVAL_NANOS[sound]) {
+            return true;
+        }
+        lastPlayedNanos[sound] = now;
+        soundManager.play(sound);
+        long receivedNanos = ((long) msg.arg1 << 32) | (msg.arg2 & 0xFFFFFFFFL);
+        latencyTracker.record((byte) msg.what, LatencyTracker.STAGE_SOUND, receivedNanos);
+        return true;
+    }
+
+    /**
+     * Sounds skipped because they were not loaded yet.
+     */
+    public long getSkippedNotReady() {
+        return skippedNotReady;
+    }
+
+    public void release() {
+        handler.post(() -> {
+            released = true;
+            if (soundManager != null) {
+                soundManager.release();
+            }
+        });
+        thread.quitSafely();
+    }
+}
@@ -5,6 +5,8 @@ import static android.content.Context.MODE_PRIVATE;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import net.lasertag.model.UdpMessages;
+
 import java.net.InetAddress;
 
 public class Config {
@@ -16,27 +18,45 @@ public class Config {
 
     private static final String PREFS_NAME = "LaserTagPrefs";
     private static final String PLAYER_ID_KEY = "player_id";
+    private static final String CAPTURE_PACKETS_KEY = "capture_packets";
+    private static final String SERVER_ADDRESS_KEY = "server_address";
 
     public static final int STATE_IDLE = 0;
     public static final int STATE_GAME = 1;
     public static final int STATE_DEAD = 2;
     public static final int STATE_OFFLINE = 3;
 
-    public static final int SERVER_PORT = 9878;
-    public static final int LISTENING_PORT = 1234;
+    public static final int SERVER_PORT = UdpMessages.SERVER_PORT;
+    public static final int LISTENING_PORT = UdpMessages.CLIENT_PORT;
+    /** Heartbeat interval while offline or in a game; between games the link may idle. */
     public static final long HEARTBEAT_INTERVAL = 1000;
-    public static final long HEARTBEAT_TIMEOUT = 3000;
+    public static final long HEARTBEAT_INTERVAL_IDLE = 3000;
+    /** Link is lost after this many heartbeat intervals plus the RTT timeout without a datagram. */
+    public static final int HEARTBEAT_MISSED_LIMIT = 3;
+    public static final long HEARTBEAT_MIN_TIMEOUT = 3000;
+    public static final long HEARTBEAT_MAX_TIMEOUT = 12000;
+    public static final long STATS_RESYNC_INTERVAL = 500;
+    public static final String CAPTURE_DIRECTORY = "captures";
+    public static final String MATCH_DIRECTORY = "matches";
 
 
+    private final SharedPreferences prefs;
     private final byte playerId;
+    private final boolean capturePackets;
     private InetAddress broadcastAddress;
     private InetAddress serverAddress = null;
+    private InetAddress lastServerAddress = null;
 
     public Config(Context context) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        prefs = context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
         playerId = (byte)prefs.getInt(PLAYER_ID_KEY, DEFAULT_PLAYER_ID);
+        capturePackets = prefs.getBoolean(CAPTURE_PACKETS_KEY, false);
         try {
             broadcastAddress = InetAddress.getByName("255.255.255.255");
+            var lastServer = prefs.getString(SERVER_ADDRESS_KEY, null);
+            if (lastServer != null) {
+                lastServerAddress = InetAddress.getByName(lastServer);
+            }
         } catch (Exception ignored) {}
     }
 
@@ -44,12 +64,33 @@ public class Config {
         return playerId;
     }
 
+    /**
+     * Whether received datagrams are recorded to a capture file, for post-mortem replay.
+     */
+    public boolean isCapturePackets() {
+        return capturePackets;
+    }
+
     public InetAddress getServerAddress() {
         return serverAddress;
     }
 
+    /**
+     * Server selected in this session, or null while it is still unknown.
+     */
     public void setServerAddress(InetAddress serverAddress) {
         this.serverAddress = serverAddress;
+        if (serverAddress != null && !serverAddress.equals(lastServerAddress)) {
+            lastServerAddress = serverAddress;
+            prefs.edit().putString(SERVER_ADDRESS_KEY, serverAddress.getHostAddress()).apply();
+        }
+    }
+
+    /**
+     * Server of a previous session, probed first when looking for the server.
+     */
+    public InetAddress getLastServerAddress() {
+        return lastServerAddress;
     }
 
     public InetAddress getBroadcastAddress() {
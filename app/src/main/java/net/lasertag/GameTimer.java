@@ -0,0 +1,71 @@
+package net.lasertag;
+
+import android.view.Choreographer;
+
+/**
+ * Counts the game timer down locally between GAME_TIMER messages. Each message only re-anchors the
+ * local end time; the remaining seconds are worked out on every display frame, and the listener hears
+ * about each whole second exactly once, on the frame it starts. A lost or late timer message therefore
+ * neither freezes nor skips the clock. Main thread only.
+ */
+public class GameTimer implements Choreographer.FrameCallback {
+
+    public interface Listener {
+        void onSecond(int secondsLeft);
+    }
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Listener listener;
+    private long endsAtNanos;
+    private int shownSeconds = -1;
+    private boolean anchored = false;
+    private boolean started = false;
+    private boolean framePending = false;
+
+    public GameTimer(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Anchors the countdown to the System.nanoTime() at which it runs out.
+     */
+    public void sync(long endsAtNanos) {
+        this.endsAtNanos = endsAtNanos;
+        anchored = true;
+        doFrame(System.nanoTime());
+    }
+
+    /**
+     * Counts while the clock is visible.
+     */
+    public void start() {
+        started = true;
+        if (anchored) {
+            doFrame(System.nanoTime());
+        }
+    }
+
+    public void stop() {
+        started = false;
+        choreographer.removeFrameCallback(this);
+        framePending = false;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        framePending = false;
+        if (!started || !anchored) {
+            return;
+        }
+        var remainingNanos = Math.max(0, endsAtNanos - frameTimeNanos);
+        var seconds = (int) ((remainingNanos + 999_999_999L) / 1_000_000_000L);
+        if (seconds != shownSeconds) {
+            shownSeconds = seconds;
+            listener.onSecond(seconds);
+        }
+        if (seconds > 0 && !framePending) {
+            framePending = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+}
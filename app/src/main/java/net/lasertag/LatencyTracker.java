@@ -0,0 +1,98 @@
+package net.lasertag;
+
+/**
+ * Allocation-free latency histograms per message type and pipeline stage.
+ * <p>
+ * Every stage is measured from the moment the datagram was received, so the numbers of successive
+ * stages show where the time goes. Buckets are powers of two in microseconds. Each (type, stage) cell
+ * is expected to be written by a single thread; dumps read it without locking and may be slightly off.
+ */
+public class LatencyTracker {
+
+    public static final int STAGE_DECODED = 0;
+    public static final int STAGE_DISPATCHED = 1;
+    public static final int STAGE_SOUND = 2;
+    public static final int STAGE_UI = 3;
+    private static final String[] STAGE_NAMES = {"decoded", "dispatched", "sound", "ui"};
+    private static final int STAGES = STAGE_NAMES.length;
+
+    private static final int BUCKETS = 26;
+    private static final int MAX_TYPES = 32;
+
+    private final byte[] typeIndex = new byte[256];
+    private final byte[] typeByIndex = new byte[MAX_TYPES];
+    private int typeCount = 0;
+
+    private final long[][][] buckets = new long[MAX_TYPES][STAGES][BUCKETS];
+    private final long[][] counts = new long[MAX_TYPES][STAGES];
+    private final long[][] maxNanos = new long[MAX_TYPES][STAGES];
+
+    public void record(byte type, int stage, long receivedNanos) {
+        if (receivedNanos == 0) {
+            return;
+        }
+        int index = indexOf(type);
+        if (index < 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - receivedNanos;
+        long micros = Math.max(1, elapsed / 1000);
+        int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        buckets[index][stage][bucket]++;
+        counts[index][stage]++;
+        if (elapsed > maxNanos[index][stage]) {
+            maxNanos[index][stage] = elapsed;
+        }
+    }
+
+    private int indexOf(byte type) {
+        int index = typeIndex[type & 0xFF] - 1;
+        return index >= 0 ? index : register(type);
+    }
+
+    private synchronized int register(byte type) {
+        int index = typeIndex[type & 0xFF] - 1;
+        if (index >= 0) {
+            return index;
+        }
+        if (typeCount == MAX_TYPES) {
+            return -1;
+        }
+        typeByIndex[typeCount] = type;
+        typeIndex[type & 0xFF] = (byte) (++typeCount);
+        return typeCount - 1;
+    }
+
+    /**
+     * p50/p99/max per type and stage. Percentiles are the upper bound of the bucket they fall into.
+     */
+    public void dump(StringBuilder out) {
+        for (int i = 0; i < typeCount; i++) {
+            out.append("type ").append(typeByIndex[i]).append(':');
+            for (int stage = 0; stage < STAGES; stage++) {
+                long count = counts[i][stage];
+                if (count == 0) {
+                    continue;
+                }
+                out.append(' ').append(STAGE_NAMES[stage])
+                        .append(" n=").append(count)
+                        .append(" p50=").append(percentileMicros(i, stage, 0.50)).append("us")
+                        .append(" p99=").append(percentileMicros(i, stage, 0.99)).append("us")
+                        .append(" max=").append(maxNanos[i][stage] / 1000).append("us;");
+            }
+            out.append('\n');
+        }
+    }
+
+    private long percentileMicros(int index, int stage, double percentile) {
+        long target = (long) Math.ceil(counts[index][stage] * percentile);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += buckets[index][stage][bucket];
+            if (seen >= target) {
+                return 1L << (bucket + 1);
+            }
+        }
+        return maxNanos[index][stage] / 1000;
+    }
+}
@@ -3,23 +3,21 @@ package net.lasertag;
 import static net.lasertag.Config.*;
 
 import android.annotation.SuppressLint;
-import android.content.BroadcastReceiver;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
+import android.content.ServiceConnection;
 import android.content.res.Configuration;
-import android.graphics.Paint;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.IBinder;
 import android.speech.tts.TextToSpeech;
 import android.speech.tts.Voice;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.View;
-import android.widget.ImageView;
-import android.widget.LinearLayout;
-import android.widget.TableLayout;
-import android.widget.TableRow;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
 import androidx.annotation.NonNull;
@@ -31,68 +29,97 @@ import android.view.Window;
 import android.view.WindowManager;
 
 import net.lasertag.model.EventMessage;
+import net.lasertag.model.MessageDispatcher;
 import net.lasertag.model.Player;
+import net.lasertag.model.Standings;
 import net.lasertag.model.StatsMessage;
 import net.lasertag.model.TimeMessage;
 import net.lasertag.model.UdpMessage;
 import net.lasertag.model.UdpMessages;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
+import java.io.File;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Objects;
 
 @SuppressLint({"SetTextI18n","InlinedApi","DefaultLocale"})
 public class MainActivity extends AppCompatActivity implements TextToSpeech.OnInitListener {
 
-    private final BroadcastReceiver udpMessageReceiver = new BroadcastReceiver() {
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            networkService = ((NetworkService.LocalBinder) binder).getService();
+            if (resumed) {
+                networkService.attachListener(serviceListener);
+            }
+        }
 
         @Override
-        public synchronized void onReceive(Context context, Intent intent) {
-            switch (Objects.requireNonNull(intent.getAction())) {
-                case "CURRENT_STATE" -> {
-                    var state = intent.getIntExtra("state", -1);
-                    teamPlay = intent.getBooleanExtra("teamPlay", false);
-                    if (state != currentState) {
-                        currentState = state;
-                        if (!toasterOn) {
-                            onRefreshUIGameSate();
-                        }
-                    }
-                }
-                case "UDP_MESSAGE_RECEIVED" -> {
-                    UdpMessage message = (UdpMessage) intent.getSerializableExtra("message");
-                    handleIncomingMessage(message);
+        public void onServiceDisconnected(ComponentName name) {
+            networkService = null;
+        }
+    };
+
+    private final NetworkService.Listener serviceListener = new NetworkService.Listener() {
+        @Override
+        public void onStateChanged(int state, boolean teamPlay) {
+            MainActivity.this.teamPlay = teamPlay;
+            if (state != currentState) {
+                currentState = state;
+                if (!toasterOn) {
+                    onRefreshUIGameSate();
                 }
             }
         }
+
+        @Override
+        public void onUdpMessage(UdpMessage message) {
+            handleIncomingMessage(message);
+            if (networkService != null) {
+                networkService.getLatencyTracker().record(message.getType(), LatencyTracker.STAGE_UI, message.getReceivedNanos());
+            }
+        }
+
+        @Override
+        public void onMissedMessages(MissedMessages missed) {
+            handleMissedMessages(missed);
+        }
     };
 
     private Config config;
     private TextView playerName;
     private TextView playerHealth;
     private TextView playerScore;
-    private TableLayout playersTable;
+    private Scoreboard scoreboard;
     private ConstraintLayout playerInfoLayout;
     private ConstraintLayout announcementLayout;
     private TextView announcementText;
     private TextView gameTime;
-    private LinearLayout bulletsBar;
-    private LinearLayout teamScoresBar;
+    private AmmoView bulletsBar;
 
     private TextToSpeech textToSpeech;
+    private SpeechCache speechCache;
+    private Startup startup;
+    private NetworkService networkService;
+    private boolean bound = false;
+    private boolean resumed = false;
 
     private static final String[] uhVariants = new String[] {"uh!", "ouch!", "ah!", "oh!", "oi!"};
+    private static final long GAME_OVER_TOASTER_MILLIS = 4000;
     private static final String[] teamNames = new String[] {"Red", "Blue", "Green", "Yellow", "Purple", "Cyan"};
     private int lastUhVariant = 0;
     private volatile int currentState = -1;
     private volatile boolean teamPlay = false;
     private volatile Player[] players = new Player[0];
+    private final StatsMessage roster = new StatsMessage(UdpMessages.FULL_STATS, false, false, (byte) 0, new Player[0]);
+    private final Player[] playersById = new Player[256];
+    private final String[] preparedNames = new String[256];
+    private final Standings standings = new Standings();
+    private final EventMessage deferredAnnouncement = new EventMessage((byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0);
     private volatile boolean toasterOn = false;
     private int lastLeader = -1;
+    private final MessageDispatcher messageHandlers = createMessageHandlers();
+    private final GameTimer gameTimer = new GameTimer(this::onTimerSecond);
+    private final MessageDispatcher eventHandlers = createEventHandlers();
 
     @Override
     public void onConfigurationChanged(@NonNull Configuration newConfig) {
@@ -103,8 +130,11 @@ public class MainActivity extends AppCompatActivity implements TextToSpeech.OnIn
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         Log.i(TAG, "onCreate");
-        config = new Config(this);
+        startup = Startup.get(this);
+        var trace = startup.getTrace();
+        long start = trace.now();
         textToSpeech = new TextToSpeech(this, this);
+        speechCache = new SpeechCache(textToSpeech, new File(getCacheDir(), "speech"));
 
         enableFullScreenMode();
         setContentView(R.layout.activity_main);
@@ -112,29 +142,45 @@ public class MainActivity extends AppCompatActivity implements TextToSpeech.OnIn
         playerName = findViewById(R.id.player_name);
         playerHealth = findViewById(R.id.player_health);
         playerScore = findViewById(R.id.player_score);
-        playersTable = findViewById(R.id.players_table);
         playerInfoLayout = findViewById(R.id.player_info_layout);
         announcementLayout = findViewById(R.id.announcement_layout);
         announcementText = findViewById(R.id.announcement_text);
         gameTime = findViewById(R.id.game_timer);
+        gameTime.setOnLongClickListener(v -> dumpDiagnostics());
         bulletsBar = findViewById(R.id.bullets_bar);
-        teamScoresBar = findViewById(R.id.team_scores);
-
-        startService(new Intent(this, NetworkService.class));
-        registerReceiver(udpMessageReceiver, new IntentFilter("UDP_MESSAGE_RECEIVED"), Context.RECEIVER_EXPORTED);
-        registerReceiver(udpMessageReceiver, new IntentFilter("CURRENT_STATE"), Context.RECEIVER_EXPORTED);
         currentState = STATE_OFFLINE;
         onRefreshUIGameSate();
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos -> trace.markOnce("first frame"));
+        trace.span("activity created", start);
+        startup.whenConfigReady(this::onConfigReady);
+    }
+
+    /**
+     * Second half of onCreate, for everything that needs the configuration.
+     */
+    private void onConfigReady(Config config) {
+        if (isDestroyed()) {
+            return;
+        }
+        this.config = config;
+        scoreboard = new Scoreboard(this, config, findViewById(R.id.players_table), findViewById(R.id.team_scores));
+
+        var serviceIntent = new Intent(this, NetworkService.class);
+        startService(serviceIntent);
+        bound = bindService(serviceIntent, serviceConnection, Context.BIND_AUTO_CREATE);
     }
 
     @Override
     public void onInit(int status) {
+        startup.getTrace().mark("text to speech ready");
         if (status == TextToSpeech.SUCCESS) {
             int result = textToSpeech.setLanguage(Locale.US);
             textToSpeech.setSpeechRate(0.7f);
             if (result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED) {
                 Log.e(TAG, "Language not supported");
             }
+            speechCache.onEngineReady();
+            prepareFixedPhrases();
         } else {
             Log.e(TAG, "Initialization failed");
         }
@@ -162,14 +208,31 @@ public class MainActivity extends AppCompatActivity implements TextToSpeech.OnIn
     protected void onResume() {
         super.onResume();
         Log.i(TAG, "onResume");
-        sendBroadcast(new Intent("ACTIVITY_RESUMED"));
+        resumed = true;
+        gameTimer.start();
+        if (networkService != null) {
+            networkService.attachListener(serviceListener);
+        }
     }
 
     @Override
     protected void onPause() {
         super.onPause();
         Log.i(TAG, "onPause");
-        sendBroadcast(new Intent("ACTIVITY_PAUSED"));
+        resumed = false;
+        gameTimer.stop();
+        if (networkService != null) {
+            networkService.detachListener();
+        }
+    }
+
+    private boolean dumpDiagnostics() {
+        if (networkService == null) {
+            return false;
+        }
+        Log.i(TAG, networkService.dumpDiagnostics());
+        Toast.makeText(this, "Diagnostics written to log", Toast.LENGTH_SHORT).show();
+        return true;
     }
 
     private void showAnnouncementLayout(boolean show) {
@@ -187,7 +250,40 @@ public class MainActivity extends AppCompatActivity implements TextToSpeech.OnIn
 
     private void speak(String message) {
         Log.i(TAG, "Speaking: " + message);
-        textToSpeech.speak(message, TextToSpeech.QUEUE_ADD, null, null);
+        speechCache.speak(message);
+    }
+
+    /**
+     * Countdown digits first, since they are the most timing sensitive.
+     */
+    private void prepareFixedPhrases() {
+        for (int seconds = 9; seconds > 0; seconds--) {
+            speechCache.prepareFixed(String.valueOf(seconds));
+        }
+        speechCache.prepareFixed("Play!");
+        speechCache.prepareFixed("You win!");
+        speechCache.prepareFixed("You are tie!");
+        speechCache.prepareFixed("Teams are tie!");
+        speechCache.prepareFixed("You are the new leader!");
+        for (String teamName : teamNames) {
+            speechCache.prepareFixed(teamName + " team leads!");
+            speechCache.prepareFixed("Game Over!\n" + teamName + " wins.");
+        }
+    }
+
+    /**
+     * Phrases naming a player, rendered when the name first shows up in the roster.
+     */
+    private void preparePlayerPhrases(Player player) {
+        var slot = player.getId() & 0xFF;
+        if (player.getName().equals(preparedNames[slot]) || player.getId() == config.getPlayerId()) {
+            return;
+        }
+        preparedNames[slot] = player.getName();
+        speechCache.prepare(player.getName() + " killed you.");
+        speechCache.prepare("You killed " + player.getName());
+        speechCache.prepare(player.getName() + " is the new leader!");
+        speechCache.prepare("Game Over!\n" + player.getName() + " wins.");
     }
 
     private void onRefreshUIGameSate() {
@@ -209,186 +305,212 @@ public class MainActivity extends AppCompatActivity implements TextToSpeech.OnIn
         }
     }
 
+    private MessageDispatcher createMessageHandlers() {
+        return new MessageDispatcher()
+                .on(UdpMessages.FULL_STATS, this::updatePlayersInfo)
+                .on(UdpMessages.GAME_TIMER, this::handleTime)
+                .on(UdpMessages.EVENT_TYPES, this::handleEvent);
+    }
+
+    private MessageDispatcher createEventHandlers() {
+        return new MessageDispatcher()
+                .on(UdpMessages.GAME_START, (EventMessage message) -> lastLeader = -1)
+                .on(UdpMessages.GOT_HIT, (EventMessage message) -> onGotHit())
+                .on(UdpMessages.RESPAWN, (EventMessage message) -> showToasterMessage("Play!", 2000))
+                .on(UdpMessages.YOU_KILLED, (EventMessage message) -> showToasterMessage(counterpartName(message) + " killed you.", 3000))
+                .on(UdpMessages.YOU_SCORED, (EventMessage message) -> showToasterMessage("You killed " + counterpartName(message), 2000))
+                .on(UdpMessages.GAME_OVER, this::onGameOver);
+    }
+
     private void handleEvent(EventMessage message) {
+        showCounters(message);
+        eventHandlers.dispatch(message);
+    }
+
+    private void showCounters(EventMessage message) {
         playerHealth.setText(String.valueOf(message.getHealth()));
         playerScore.setText(String.valueOf(message.getScore()));
-        refreshBulletsBar(message.getBulletsLeft());
+        bulletsBar.setBulletsLeft(message.getBulletsLeft());
+    }
+
+    private String counterpartName(EventMessage message) {
         var otherPlayer = getPlayerById(message.getCounterpartPlayerId());
-        var otherName = otherPlayer != null ? otherPlayer.getName() : "someone";
-        switch (message.getType()) {
-            case UdpMessages.GAME_START -> lastLeader = -1;
-            case UdpMessages.GOT_HIT -> {
-                var uhVariant = lastUhVariant;
-                while (uhVariant == lastUhVariant) {
-                    uhVariant = (int) (Math.random() * uhVariants.length);
-                }
-                //speak(uhVariants[uhVariant]);
-                lastUhVariant = uhVariant;
-            }
-            case UdpMessages.RESPAWN -> showToasterMessage("Play!", 2000);
-            case UdpMessages.YOU_KILLED -> showToasterMessage(otherName + " killed you.", 3000);
-            case UdpMessages.YOU_SCORED -> showToasterMessage("You killed " + otherName, 2000);
-            case UdpMessages.GAME_OVER -> {
-                if (teamPlay) {
-                    var teamName = message.getCounterpartPlayerId() > 0 ? teamNames[message.getCounterpartPlayerId() - 1] : "No one";
-                    showToasterMessage("Game Over!\n" + teamName + " wins.", 4000);
-                } else {
-                    if (message.getCounterpartPlayerId() == config.getPlayerId()) {
-                        showToasterMessage("You win!", 4000);
-                    } else {
-                        showToasterMessage("Game Over!\n" + (otherPlayer == null ? "No one" : otherPlayer.getName()) + " wins.", 4000);
-                    }
-                }
+        return otherPlayer != null ? otherPlayer.getName() : "someone";
+    }
+
+    private void onGotHit() {
+        var uhVariant = lastUhVariant;
+        while (uhVariant == lastUhVariant) {
+            uhVariant = (int) (Math.random() * uhVariants.length);
+        }
+        //speak(uhVariants[uhVariant]);
+        lastUhVariant = uhVariant;
+    }
+
+    private void onGameOver(EventMessage message) {
+        if (teamPlay) {
+            var teamName = message.getCounterpartPlayerId() > 0 ? teamName(message.getCounterpartPlayerId()) : "No one";
+            showToasterMessage("Game Over!\n" + teamName + " wins.", GAME_OVER_TOASTER_MILLIS);
+        } else {
+            if (message.getCounterpartPlayerId() == config.getPlayerId()) {
+                showToasterMessage("You win!", GAME_OVER_TOASTER_MILLIS);
+            } else {
+                var otherPlayer = getPlayerById(message.getCounterpartPlayerId());
+                showToasterMessage("Game Over!\n" + (otherPlayer == null ? "No one" : otherPlayer.getName()) + " wins.", GAME_OVER_TOASTER_MILLIS);
             }
         }
     }
 
     private void handleTime(TimeMessage message) {
+        gameTimer.sync(message.getEndsAtNanos());
+    }
+
+    /**
+     * Called by the local game timer once per second, whether or not a timer message arrived.
+     */
+    private void onTimerSecond(int secondsLeft) {
         if (!toasterOn) {
+            var minutes = secondsLeft / 60;
+            var seconds = secondsLeft % 60;
             switch (currentState) {
-                case STATE_IDLE -> announcementText.setText(String.format("Start in %d...", message.getSeconds()));
-                case STATE_GAME -> gameTime.setText(String.format("%02d:%02d", message.getMinutes(), message.getSeconds()));
-                case STATE_DEAD -> announcementText.setText(String.format("You are dead.\nRespawn in %d...", message.getSeconds()));
+                case STATE_IDLE -> announcementText.setText(String.format("Start in %d...", seconds));
+                case STATE_GAME -> gameTime.setText(String.format("%02d:%02d", minutes, seconds));
+                case STATE_DEAD -> announcementText.setText(String.format("You are dead.\nRespawn in %d...", seconds));
             }
-            if (message.getMinutes() == 0 && message.getSeconds() < 10 && message.getSeconds() > 0) {
-                speak(String.valueOf(message.getSeconds()));
+            if (minutes == 0 && seconds < 10 && seconds > 0) {
+                speak(String.valueOf(seconds));
             }
         }
     }
 
     private void handleIncomingMessage(UdpMessage message) {
-        if (message instanceof StatsMessage) {
-            runOnUiThread(() -> updatePlayersInfo((StatsMessage) message));
-        } else if (message instanceof EventMessage) {
-            handleEvent((EventMessage) message);
-        } else if (message instanceof TimeMessage) {
-            handleTime((TimeMessage) message);
-        }//AckMessage ignored
+        messageHandlers.dispatch(message); // AckMessage has no handler
+    }
+
+    /**
+     * Catches up after a pause in one refresh: the counters come from the last missed event, and the
+     * roster and timer are applied once in their latest version. Rather than replaying every toaster,
+     * a missed game over is announced, and so is the last announced event unless it is that game over,
+     * in which case it follows once the game over toaster is done.
+     */
+    private void handleMissedMessages(MissedMessages missed) {
+        var count = missed.getEventCount();
+        var gameOver = -1;
+        var announcement = -1;
+        for (int i = 0; i < count; i++) {
+            var type = missed.getEvent(i).getType();
+            if (type == UdpMessages.GAME_START) {
+                lastLeader = -1;
+            } else if (type == UdpMessages.GAME_OVER) {
+                gameOver = i;
+            }
+            if (isAnnounced(type)) {
+                announcement = i;
+            }
+        }
+        if (count > 0) {
+            showCounters(missed.getEvent(count - 1));
+        }
+        if (missed.getStats() != null) {
+            updatePlayersInfo(missed.getStats());
+        }
+        if (missed.getTime() != null) {
+            handleTime(missed.getTime());
+        }
+        if (gameOver >= 0) {
+            eventHandlers.dispatch(missed.getEvent(gameOver));
+        }
+        if (announcement > gameOver) {
+            if (gameOver >= 0) {
+                deferredAnnouncement.copyFrom(missed.getEvent(announcement));
+                new Handler().postDelayed(() -> eventHandlers.dispatch(deferredAnnouncement), GAME_OVER_TOASTER_MILLIS);
+            } else {
+                eventHandlers.dispatch(missed.getEvent(announcement));
+            }
+        }
+        Log.i(TAG, "Caught up on " + count + " missed events");
+    }
+
+    private static boolean isAnnounced(byte type) {
+        return type == UdpMessages.RESPAWN || type == UdpMessages.YOU_KILLED || type == UdpMessages.YOU_SCORED
+                || type == UdpMessages.GAME_OVER;
     }
 
-    private void announceLeaderChange(Player[] newPlayers) {
-        if (players.length == 0) {
+    private void announceLeaderChange() {
+        if (standings.getPlayerCount() == 0) {
             return;
         }
         if (teamPlay) {
-            var teamScores = getTeamScores(players);
-            var leaderTeam = Collections.max(teamScores.entrySet(), Map.Entry.comparingByValue());
-            var countOfLeaders = (int) teamScores.values().stream().filter(s -> s.equals(leaderTeam.getValue())).count();
-            var newLeaderId = countOfLeaders == 1 ? leaderTeam.getKey() : -1;
+            var newLeaderId = standings.getLeaderTeam();
             if (lastLeader != newLeaderId) {
-                var message = (newLeaderId == -1 ? "Teams are tie!" : teamNames[newLeaderId - 1] + " team leads!");
+                var message = (newLeaderId == Standings.TIE ? "Teams are tie!" : teamName(newLeaderId) + " team leads!");
                 new Handler().postDelayed(() -> speak(message), toasterOn ? 2000 : 100);
             }
             lastLeader = newLeaderId;
         } else {
-            var maxScore = newPlayers[0].getScore();
-            var countOfLeaders = (int) Arrays.stream(newPlayers).filter(p -> p.getScore() == maxScore).count();
-            var newLeaderId = countOfLeaders == 1 ? newPlayers[0].getId() : -1;
+            var newLeaderId = standings.getLeaderPlayer();
             if (lastLeader != newLeaderId) {
-                var message = (newLeaderId == -1 ? "You are tie!" :
-                        (newLeaderId == config.getPlayerId()
+                var message = (newLeaderId == Standings.TIE ? "You are tie!" :
+                        (newLeaderId == (config.getPlayerId() & 0xFF)
                                 ? "You are"
-                                : Objects.requireNonNull(getPlayerById(newLeaderId)).getName() + " is") + " the new leader!");
+                                : Objects.requireNonNull(getPlayerById((byte) newLeaderId)).getName() + " is") + " the new leader!");
                 new Handler().postDelayed(() -> speak(message), toasterOn ? 2000 : 100);
             }
             lastLeader = newLeaderId;
         }
     }
 
-    private Map<Byte, Integer> getTeamScores(Player[] players) {
-        Map<Byte, Integer> teamScores = new HashMap<>();
+    private void updatePlayersInfo(StatsMessage message) {
         for (Player player : players) {
-            teamScores.put(player.getTeamId(), teamScores.getOrDefault(player.getTeamId(), 0) + player.getScore());
+            playersById[player.getId() & 0xFF] = null;
         }
-        return teamScores;
-    }
-
-    private void updatePlayersInfo(StatsMessage message) {
-        playersTable.removeViews(1, Math.max(0, playersTable.getChildCount() - 1));
-        teamScoresBar.removeAllViews();
-        for (Player player : message.getPlayers()) {
-            if (player.getId() == config.getPlayerId()) {
-                playerName.setText(player.getName());
-                playerName.setBackgroundColor(ResourcesCompat.getColor(getResources(), config.getTeamColor(player.getTeamId(), true), null));
-                playerHealth.setText(String.valueOf(player.getHealth()));
-                playerScore.setText(String.valueOf(player.getScore()));
-            }
-            TableRow row = new TableRow(this);
-            row.setPadding(8, 8, 8, 8);
-            row.setBackground(ResourcesCompat.getDrawable(getResources(), R.drawable.table_row_border, null));
-            row.setBackgroundColor(ResourcesCompat.getColor(getResources(), config.getTeamColor(player.getTeamId(), true), null));
-
-            TextView nameText = new TextView(this);
-            nameText.setText(player.getName());
-            nameText.setLayoutParams(new TableRow.LayoutParams(0, TableRow.LayoutParams.WRAP_CONTENT, 2));
-
-            TextView scoreText = new TextView(this);
-            scoreText.setText(String.valueOf(player.getScore()));
-            scoreText.setLayoutParams(new TableRow.LayoutParams(0, TableRow.LayoutParams.WRAP_CONTENT, 1));
-
-            TextView healthText = new TextView(this);
-            healthText.setText(String.valueOf(player.getHealth()));
-            healthText.setLayoutParams(new TableRow.LayoutParams(0, TableRow.LayoutParams.WRAP_CONTENT, 1));
-
-            var textFields = Arrays.asList(nameText, scoreText, healthText);
-
-            for (TextView text : textFields) {
-                text.setPadding(8, 8, 8, 8);
-                if (player.getHealth() <= 0) {
-                    text.setPaintFlags(text.getPaintFlags() | Paint.STRIKE_THRU_TEXT_FLAG);
-                    text.setTextColor(ResourcesCompat.getColor(getResources(), R.color.black, null));
-                } else {
-                    text.setTextColor(ResourcesCompat.getColor(getResources(), R.color.white, null));
-                }
-                row.addView(text);
-            }
-            playersTable.addView(row);
+        // the message is recycled by the decoder, keep a copy of the roster for later lookups
+        players = roster.copyFrom(message).getPlayers();
+        for (Player player : players) {
+            playersById[player.getId() & 0xFF] = player;
+            preparePlayerPhrases(player);
         }
-        if (teamPlay) {
-            for (Map.Entry<Byte, Integer> e : getTeamScores(message.getPlayers()).entrySet()) {
-                TextView teamScore = new TextView(this);
-                teamScore.setTextColor(ResourcesCompat.getColor(getResources(), R.color.white, null));
-                teamScore.setPadding(16, 8, 8, 8);
-                teamScore.setTextSize(30);
-                teamScore.setText(String.valueOf(e.getValue()));
-                teamScore.setBackgroundColor(ResourcesCompat.getColor(getResources(), config.getTeamColor(e.getKey(), true), null));
-                teamScore.setLayoutParams(new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.MATCH_PARENT, 1));
-                teamScoresBar.addView(teamScore);
-            }
+        var self = getPlayerById(config.getPlayerId());
+        if (self != null) {
+            playerName.setText(self.getName());
+            playerName.setBackgroundColor(ResourcesCompat.getColor(getResources(), config.getTeamColor(self.getTeamId(), true), null));
+            playerHealth.setText(String.valueOf(self.getHealth()));
+            playerScore.setText(String.valueOf(self.getScore()));
+        }
+        var hadPlayers = standings.getPlayerCount() > 0;
+        standings.update(players);
+        scoreboard.update(players, standings, teamPlay);
+        if (hadPlayers) {
+            // the first roster after connecting only sets the scene, there is no change to announce yet
+            announceLeaderChange();
         }
-        announceLeaderChange(message.getPlayers());
-        players = message.getPlayers();
     }
 
-    private void refreshBulletsBar(int bulletsLeft) {
-        bulletsBar.removeAllViews();
-        for (int i = 0; i < bulletsLeft; i++) {
-            ImageView bullet = new ImageView(this);
-            bullet.setImageResource(R.drawable.bullet);
-            bullet.setLayoutParams(new LinearLayout.LayoutParams(LinearLayout.LayoutParams.WRAP_CONTENT,
-                    LinearLayout.LayoutParams.WRAP_CONTENT));
-            bulletsBar.addView(bullet);
-        }
+    /**
+     * Name of a team id as the server numbers them from 1, or a generic one for ids without a name.
+     */
+    private static String teamName(int teamId) {
+        return teamId >= 1 && teamId <= teamNames.length ? teamNames[teamId - 1] : "Team " + teamId;
     }
 
     private Player getPlayerById(byte id) {
-        for (Player player : players) {
-            if (player.getId() == id) {
-                return player;
-            }
-        }
-        return null;
+        return playersById[id & 0xFF];
     }
 
     @Override
     protected void onDestroy() {
         Log.i(TAG, "onDestroy called");
+        if (speechCache != null) {
+            speechCache.release();
+        }
         if (textToSpeech != null) {
             textToSpeech.stop();
             textToSpeech.shutdown();
         }
         super.onDestroy();
-        unregisterReceiver(udpMessageReceiver);
+        if (bound) {
+            unbindService(serviceConnection);
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,256 @@
+package net.lasertag;
+
+import static net.lasertag.Config.TAG;
+
+import android.util.Log;
+
+import net.lasertag.model.EventMessage;
+import net.lasertag.model.MatchLog;
+import net.lasertag.model.UdpMessages;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a {@link MatchLog} per match: GAME_START, or RESPAWN when joining a running game, opens a new
+ * log and GAME_OVER closes it. Events outside of a match are not kept.
+ * <p>
+ * The network thread copies the event into a fixed ring, and a background thread appends the ring to
+ * the open log in one write every {@link #FLUSH_INTERVAL_MILLIS}. Events are dropped and counted
+ * when the writer falls behind by a whole ring.
+ * <p>
+ * After a match is closed, the newest {@link #FULL_DETAIL_MATCHES} logs are kept as they are, older
+ * ones are compacted, and the oldest are deleted beyond {@link #MAX_MATCHES} or {@link #MAX_TOTAL_BYTES}.
+ */
+public class MatchRecorder {
+
+    private static final int RING_SIZE = 1024;
+    private static final int RING_MASK = RING_SIZE - 1;
+    private static final long FLUSH_INTERVAL_MILLIS = 500;
+    private static final int FULL_DETAIL_MATCHES = 20;
+    private static final int MAX_MATCHES = 300;
+    private static final long MAX_TOTAL_BYTES = 16 * 1024 * 1024;
+    private static final String PREFIX = "match-";
+    private static final String SUFFIX = ".bin";
+
+    private final long[] ringNanos = new long[RING_SIZE];
+    private final byte[] ringTypes = new byte[RING_SIZE];
+    private final byte[] ringCounterparts = new byte[RING_SIZE];
+    private final byte[] ringHealths = new byte[RING_SIZE];
+    private final byte[] ringScores = new byte[RING_SIZE];
+    private final byte[] ringBullets = new byte[RING_SIZE];
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final File directory;
+    private final byte playerId;
+    private final Thread writer;
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(RING_SIZE * MatchLog.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer header = ByteBuffer.allocate(MatchLog.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private File file;
+    private FileChannel channel;
+    private long matchStartNanos;
+    private long matchStartMillis;
+    private int matchRecords;
+    private int lastTimeMillis;
+
+    private volatile boolean running = true;
+    private volatile long droppedCount = 0;
+
+    public MatchRecorder(File directory, byte playerId) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.directory = directory;
+        this.playerId = playerId;
+        writer = new Thread(this::writeLoop, "MatchRecorder");
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+    }
+
+    /**
+     * Producer side, called from the network thread.
+     */
+    public void record(EventMessage event, long receivedNanos) {
+        long t = tail.get();
+        if (t - head.get() >= RING_SIZE) {
+            droppedCount++;
+            return;
+        }
+        int index = (int) (t & RING_MASK);
+        ringNanos[index] = receivedNanos;
+        ringTypes[index] = event.getType();
+        ringCounterparts[index] = event.getCounterpartPlayerId();
+        ringHealths[index] = event.getHealth();
+        ringScores[index] = event.getScore();
+        ringBullets[index] = event.getBulletsLeft();
+        tail.lazySet(t + 1);
+    }
+
+    private void writeLoop() {
+        try {
+            applyRetention();
+            while (running) {
+                Thread.sleep(FLUSH_INTERVAL_MILLIS);
+                flush();
+            }
+            flush();
+        } catch (InterruptedException ignored) {
+        } catch (IOException e) {
+            Log.e(TAG, "Match recording failed, recording stopped", e);
+            running = false;
+        } finally {
+            closeMatch();
+        }
+    }
+
+    private void flush() throws IOException {
+        long h = head.get();
+        long t = tail.get();
+        while (h < t) {
+            int index = (int) (h & RING_MASK);
+            var type = ringTypes[index];
+            if (type == UdpMessages.GAME_START || (channel == null && type == UdpMessages.RESPAWN)) {
+                writeBatch();
+                closeMatch();
+                openMatch(ringNanos[index]);
+            }
+            if (channel != null) {
+                lastTimeMillis = (int) ((ringNanos[index] - matchStartNanos) / 1_000_000);
+                MatchLog.putRecord(batch, lastTimeMillis, type, ringCounterparts[index], ringHealths[index],
+                        ringScores[index], ringBullets[index]);
+                matchRecords++;
+            }
+            head.lazySet(++h);
+            if (type == UdpMessages.GAME_OVER) {
+                writeBatch();
+                closeMatch();
+                applyRetention();
+            }
+        }
+        writeBatch();
+    }
+
+    private void openMatch(long startNanos) throws IOException {
+        matchStartNanos = startNanos;
+        matchRecords = 0;
+        lastTimeMillis = 0;
+        matchStartMillis = System.currentTimeMillis() - (System.nanoTime() - startNanos) / 1_000_000;
+        file = new File(directory, PREFIX + matchStartMillis + SUFFIX);
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        header.clear();
+        MatchLog.writeHeader(header, matchStartMillis, playerId, 0);
+        header.flip();
+        channel.write(header);
+    }
+
+    private void writeBatch() throws IOException {
+        batch.flip();
+        if (channel != null) {
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+        }
+        batch.clear();
+    }
+
+    private void closeMatch() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            header.clear();
+            MatchLog.writeHeader(header, matchStartMillis, playerId, 0);
+            MatchLog.writeTrailer(header, matchRecords, lastTimeMillis);
+            header.flip();
+            channel.write(header, 0);
+            channel.close();
+            var out = new StringBuilder("Match log closed, ").append(droppedCount).append(" events dropped so far\n");
+            new MatchLog(file).dump(out);
+            Log.i(TAG, out.toString());
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to close match log " + file, e);
+        }
+        channel = null;
+    }
+
+    private void applyRetention() {
+        var matches = listMatches();
+        long totalBytes = 0;
+        for (int i = 0; i < matches.length; i++) {
+            var match = matches[i];
+            if (match.equals(file) && channel != null) {
+                continue;
+            }
+            try {
+                if (i >= FULL_DETAIL_MATCHES && (MatchLog.readFlags(match) & MatchLog.FLAG_COMPACTED) == 0) {
+                    compact(match);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Removing unreadable match log " + match + ": " + e.getMessage());
+                match.delete();
+                continue;
+            }
+            totalBytes += match.length();
+            if (i >= MAX_MATCHES || totalBytes > MAX_TOTAL_BYTES) {
+                match.delete();
+            }
+        }
+    }
+
+    private void compact(File match) throws IOException {
+        var log = new MatchLog(match);
+        var out = ByteBuffer.allocate(MatchLog.HEADER_SIZE + log.getRecordCount() * MatchLog.RECORD_SIZE);
+        log.compactTo(out);
+        out.flip();
+        var temp = new File(directory, match.getName() + ".tmp");
+        try (var stream = new FileOutputStream(temp)) {
+            stream.getChannel().write(out);
+        }
+        if (!temp.renameTo(match)) {
+            temp.delete();
+            throw new IOException("Cannot replace " + match);
+        }
+    }
+
+    /**
+     * Match logs in this directory, newest first. Safe to call from any thread, although the log of a
+     * running match may still be growing.
+     */
+    public File[] listMatches() {
+        var files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(startMillisOf(b), startMillisOf(a)));
+        return files;
+    }
+
+    private static long startMillisOf(File match) {
+        var name = match.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Writes out what is still buffered and closes the open log on the writer thread.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+}
@@ -0,0 +1,88 @@
+package net.lasertag;
+
+import android.os.Handler;
+import android.view.Choreographer;
+
+import net.lasertag.model.MessageQueue;
+import net.lasertag.model.UdpMessage;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands decoded messages from the network thread to the main thread without serialization or IPC,
+ * through a {@link MessageQueue}: stats and timer messages are coalesced to the newest as they are
+ * offered, and every event is delivered, in order. At most one drain is pending on the consumer thread
+ * at any time.
+ * <p>
+ * While frame aligned, the queue is drained once per display frame instead of as soon as possible.
+ * Frames stop when the screen is off, so the owner switches alignment off while nothing is shown.
+ */
+public class MessageChannel {
+
+    private final MessageQueue queue = new MessageQueue();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Handler consumerHandler;
+    private final Choreographer choreographer;
+    private final MessageQueue.Consumer consumer;
+    private final Runnable drainTask = this::drain;
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> drain();
+    private volatile boolean frameAligned = false;
+
+    /**
+     * Must be created on the consumer handler's thread, which owns the choreographer.
+     */
+    public MessageChannel(Handler consumerHandler, MessageQueue.Consumer consumer) {
+        this.consumerHandler = consumerHandler;
+        this.consumer = consumer;
+        choreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Producer side. Never drops a message.
+     */
+    public void offer(UdpMessage message) {
+        queue.offer(message);
+        if (drainScheduled.compareAndSet(false, true)) {
+            if (frameAligned) {
+                choreographer.postFrameCallback(frameCallback);
+            } else {
+                consumerHandler.post(drainTask);
+            }
+        }
+    }
+
+    /**
+     * Consumer thread only. Turning alignment off flushes right away, in case a frame callback is
+     * pending that will not run while the screen is off.
+     */
+    public void setFrameAligned(boolean frameAligned) {
+        this.frameAligned = frameAligned;
+        if (!frameAligned) {
+            choreographer.removeFrameCallback(frameCallback);
+            drain();
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        queue.drainTo(consumer);
+    }
+
+    /**
+     * Events that arrived while the main thread was more than a ring behind.
+     */
+    public long getOverflowCount() {
+        return queue.getOverflowCount();
+    }
+
+    /**
+     * Stats messages skipped because a newer one arrived before they were delivered.
+     */
+    public long getCollapsedStatsCount() {
+        return queue.getCollapsedStatsCount();
+    }
+
+    public long getCollapsedTimerCount() {
+        return queue.getCollapsedTimerCount();
+    }
+}
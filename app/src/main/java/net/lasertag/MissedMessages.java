@@ -0,0 +1,119 @@
+package net.lasertag;
+
+import net.lasertag.model.EventMessage;
+import net.lasertag.model.Player;
+import net.lasertag.model.StatsMessage;
+import net.lasertag.model.TimeMessage;
+import net.lasertag.model.UdpMessage;
+import net.lasertag.model.UdpMessages;
+
+/**
+ * What the activity missed while it was paused, handed over as one batch when it resumes.
+ * <p>
+ * Events are copied into a preallocated ring of {@link #CAPACITY}, in arrival order; when it is full
+ * the oldest event is overwritten and counted as overflow. Stats and timer messages only matter in
+ * their latest version, so each new one replaces the one before. Copies are taken because the
+ * decoder recycles its messages. Main thread only.
+ */
+public class MissedMessages {
+
+    public static final int CAPACITY = 64;
+
+    private final EventMessage[] events = new EventMessage[CAPACITY];
+    private final StatsMessage stats = new StatsMessage(UdpMessages.FULL_STATS, false, false, (byte) 0, new Player[0]);
+    private final TimeMessage time = new TimeMessage(UdpMessages.GAME_TIMER, (byte) 0, (byte) 0);
+    private int first = 0;
+    private int eventCount = 0;
+    private boolean hasStats = false;
+    private boolean hasTime = false;
+    private long overflowCount = 0;
+    private long collapsedCount = 0;
+
+    public MissedMessages() {
+        for (int i = 0; i < CAPACITY; i++) {
+            events[i] = new EventMessage((byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0);
+        }
+    }
+
+    public void add(UdpMessage message) {
+        if (message instanceof EventMessage) {
+            if (eventCount == CAPACITY) {
+                first = (first + 1) % CAPACITY;
+                eventCount--;
+                overflowCount++;
+            }
+            var slot = events[(first + eventCount++) % CAPACITY].copyFrom((EventMessage) message);
+            slot.setReceivedNanos(message.getReceivedNanos());
+        } else if (message instanceof StatsMessage) {
+            if (hasStats) {
+                collapsedCount++;
+            }
+            stats.copyFrom((StatsMessage) message).setReceivedNanos(message.getReceivedNanos());
+            hasStats = true;
+        } else if (message instanceof TimeMessage) {
+            if (hasTime) {
+                collapsedCount++;
+            }
+            var source = (TimeMessage) message;
+            time.setMinutes(source.getMinutes());
+            time.setSeconds(source.getSeconds());
+            time.setEndsAtServerMicros(source.getEndsAtServerMicros());
+            time.setEndsAtNanos(source.getEndsAtNanos());
+            time.setReceivedNanos(source.getReceivedNanos());
+            hasTime = true;
+        }
+    }
+
+    public boolean isEmpty() {
+        return eventCount == 0 && !hasStats && !hasTime;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * The i-th missed event, oldest first.
+     */
+    public EventMessage getEvent(int i) {
+        return events[(first + i) % CAPACITY];
+    }
+
+    /**
+     * Latest missed stats, or null.
+     */
+    public StatsMessage getStats() {
+        return hasStats ? stats : null;
+    }
+
+    /**
+     * Latest missed timer, or null.
+     */
+    public TimeMessage getTime() {
+        return hasTime ? time : null;
+    }
+
+    /**
+     * Forgets the batch once it was delivered. The preallocated copies are kept for the next one.
+     */
+    public void clear() {
+        first = 0;
+        eventCount = 0;
+        hasStats = false;
+        hasTime = false;
+    }
+
+    /**
+     * Events lost because more than {@link #CAPACITY} arrived during one pause.
+     */
+    public long getOverflowCount() {
+        return overflowCount;
+    }
+
+    /**
+     * Stats and timer messages replaced by a newer one during a pause.
+     */
+    public long getCollapsedCount() {
+        return collapsedCount;
+    }
+}
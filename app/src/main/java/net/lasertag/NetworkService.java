@@ -4,78 +4,193 @@ import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.Service;
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.os.Build;
+import android.os.Binder;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
+import net.lasertag.model.AckMessage;
+import net.lasertag.model.ClockSync;
 import net.lasertag.model.EventMessage;
 import static net.lasertag.Config.*;
 
-import androidx.annotation.RequiresApi;
-
+import net.lasertag.model.GameStateStore;
+import net.lasertag.model.MessageDispatcher;
+import net.lasertag.model.Player;
+import net.lasertag.model.ReliableInbox;
+import net.lasertag.model.RttEstimator;
+import net.lasertag.model.SequenceTracker;
+import net.lasertag.model.StatsDeltaMessage;
+import net.lasertag.model.StatsFragmentMessage;
 import net.lasertag.model.StatsMessage;
+import net.lasertag.model.TimeMessage;
 import net.lasertag.model.UdpMessage;
+import net.lasertag.model.UdpMessageDecoder;
+import net.lasertag.model.UdpMessageEncoder;
 import net.lasertag.model.UdpMessages;
 
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
-import java.util.Arrays;
-import java.util.Objects;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 
 public class NetworkService extends Service {
 
+    /**
+     * Receives service output on the main thread, in the order it was produced.
+     */
+    public interface Listener {
+        void onStateChanged(int state, boolean teamPlay);
+        void onUdpMessage(UdpMessage message);
+
+        /**
+         * Everything that arrived while no listener was attached, delivered once on attach. The batch
+         * is only valid during the call.
+         */
+        void onMissedMessages(MissedMessages missed);
+    }
+
+    public class LocalBinder extends Binder {
+        public NetworkService getService() {
+            return NetworkService.this;
+        }
+    }
+
+    /** Path of a capture file to replay through the service, given with the start intent. */
+    public static final String EXTRA_REPLAY_FILE = "net.lasertag.REPLAY_FILE";
+    /** Replay speed factor, 1 for recorded timing, 0 for as fast as possible. */
+    public static final String EXTRA_REPLAY_SPEED = "net.lasertag.REPLAY_SPEED";
+
+    private final IBinder binder = new LocalBinder();
+    private final Runnable stateDelivery = this::deliverCurrentState;
+
+    private Startup startup;
     private Config config;
-    private final ScheduledExecutorService executorService = Executors.newScheduledThreadPool(3);
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final MessageChannel messageChannel = new MessageChannel(mainHandler, this::onMessageDelivered);
+    private Listener listener;
 
-    private DatagramSocket heartbeatSocket;
-    private SoundManager soundManager;
+    private UdpEventLoop eventLoop;
+    private final UdpMessageDecoder decoder = new UdpMessageDecoder();
+    private final SequenceTracker sequenceTracker = new SequenceTracker();
+    private final LatencyTracker latencyTracker = new LatencyTracker();
+    private final Runnable heartbeatTask = this::heartbeat;
+    private final ByteBuffer pingBuffer = ByteBuffer.allocate(11);
+    private final ReliableInbox reliableInbox = new ReliableInbox();
+    private final RttEstimator rttEstimator = new RttEstimator();
+    private final ClockSync clockSync = new ClockSync();
+    private int pingSequence = 0;
+    private volatile long heartbeatInterval = HEARTBEAT_INTERVAL;
+    private volatile long heartbeatTimeout = HEARTBEAT_MIN_TIMEOUT;
+    private InetSocketAddress serverEndpoint;
+    private ServerDiscovery serverDiscovery;
+    private AudioDispatcher audioDispatcher;
+    private PacketRecorder packetRecorder;
+    private PacketReplayer packetReplayer;
+    private MatchRecorder matchRecorder;
+    private SequenceTracker replaySequenceTracker;
+    private ReliableInbox replayInbox;
+    private File pendingReplayFile;
+    private double pendingReplaySpeed;
+    private boolean destroyed = false;
 
-    private volatile boolean isActive = true;
+    private volatile boolean isActive = false;
     private volatile boolean isGameRunning = false;
     private volatile boolean isPlayerDead = false;
     private volatile boolean isOnline = false;
     private volatile boolean teamPlay = false;
 
-    private volatile Long lastPingTime = 0L;
+    private volatile long lastPingTime = 0L;
     private volatile int currentState = -1;
     private boolean firstEverMessage = true;
 
-    private StatsMessage lastStatsMessage;
-    private EventMessage lastEventMessage;
-
-
-    private final BroadcastReceiver activityResumedReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            switch (Objects.requireNonNull(intent.getAction())) {
-                case "ACTIVITY_PAUSED" -> isActive = false;
-                case "ACTIVITY_RESUMED" -> {
-                    isActive = true;
-                    sendCurrentStateToActivity();
-                    sendUdpMessageToActivity(lastStatsMessage);
-                    sendUdpMessageToActivity(lastEventMessage);
-                    lastStatsMessage = null;
-                    lastEventMessage = null;
-                }
-            }
+    private final GameStateStore gameState = new GameStateStore();
+    private final ByteBuffer resyncRequest = ByteBuffer.allocate(2);
+    private long lastResyncRequestTime = 0;
+
+    private final MissedMessages missedMessages = new MissedMessages();
+    private final MessageDispatcher stateHandlers = createStateHandlers();
+
+
+    /**
+     * Called by the bound activity on resume. Replays whatever was retained while it was paused.
+     */
+    public void attachListener(Listener listener) {
+        this.listener = listener;
+        isActive = true;
+        messageChannel.setFrameAligned(true);
+        deliverCurrentState();
+        if (!missedMessages.isEmpty()) {
+            listener.onMissedMessages(missedMessages);
+            missedMessages.clear();
+        }
+    }
+
+    public void detachListener() {
+        isActive = false;
+        listener = null;
+        messageChannel.setFrameAligned(false);
+    }
+
+    /**
+     * Loss, reordering and duplicate counters per message type.
+     */
+    public SequenceTracker getSequenceTracker() {
+        return sequenceTracker;
+    }
+
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    /**
+     * Packet counters and latency histograms as text, for the log or a debug screen.
+     */
+    public String dumpDiagnostics() {
+        var out = new StringBuilder("Packet stats:\n");
+        sequenceTracker.dump(out);
+        if (serverDiscovery != null) {
+            serverDiscovery.dump(out);
         }
-    };
+        rttEstimator.dump(out);
+        clockSync.dump(out);
+        reliableInbox.dump(out);
+        out.append("heartbeat interval=").append(heartbeatInterval).append("ms timeout=").append(heartbeatTimeout).append("ms\n");
+        out.append("Received by type:\n");
+        decoder.getRegistry().dump(out);
+        out.append("Latency since receive:\n");
+        latencyTracker.dump(out);
+        out.append("Sounds skipped while loading: ").append(audioDispatcher.getSkippedNotReady()).append('\n');
+        out.append("Main thread: overflowed ").append(messageChannel.getOverflowCount())
+                .append(", collapsed stats ").append(messageChannel.getCollapsedStatsCount())
+                .append(", collapsed timer ").append(messageChannel.getCollapsedTimerCount()).append('\n');
+        out.append("Incomplete stats snapshots: ").append(gameState.getIncompleteSnapshots()).append('\n');
+        out.append("Missed while paused: overflow ").append(missedMessages.getOverflowCount())
+                .append(", collapsed ").append(missedMessages.getCollapsedCount()).append('\n');
+        if (matchRecorder != null) {
+            out.append("Match events dropped: ").append(matchRecorder.getDroppedCount()).append('\n');
+        }
+        return out.toString();
+    }
+
+    public String dumpStartupTrace() {
+        var out = new StringBuilder("Startup trace:\n");
+        startup.getTrace().dump(out);
+        return out.toString();
+    }
 
     @Override
     public void onCreate() {
         super.onCreate();
-        config = new Config(this);
-        soundManager = new SoundManager(this);
+        startup = Startup.get(this);
+        startup.whenConfigReady(this::onConfigReady);
+        audioDispatcher = new AudioDispatcher(latencyTracker);
+        startup.acquireSoundManager(audioDispatcher::setSoundManager);
         createNotificationChannel();
         Notification notification = new Notification.Builder(this, CHANNEL_ID)
                 .setContentTitle("Your Service is Running")
@@ -84,8 +199,6 @@ public class NetworkService extends Service {
                 .build();
 
         startForeground(1, notification);
-        registerReceiver(activityResumedReceiver, new IntentFilter("ACTIVITY_RESUMED"), Context.RECEIVER_EXPORTED);
-        registerReceiver(activityResumedReceiver, new IntentFilter("ACTIVITY_PAUSED"), Context.RECEIVER_EXPORTED);
     }
 
     private void createNotificationChannel() {
@@ -99,68 +212,331 @@ public class NetworkService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
-        unregisterReceiver(activityResumedReceiver);
-        executorService.shutdownNow();
-        soundManager.release();
-        if (heartbeatSocket != null && !heartbeatSocket.isClosed()) {
-            heartbeatSocket.close();
+        destroyed = true;
+        if (packetReplayer != null) {
+            packetReplayer.stop();
+        }
+        if (eventLoop != null) {
+            eventLoop.shutdown();
+        }
+        if (packetRecorder != null) {
+            packetRecorder.stop();
         }
+        if (matchRecorder != null) {
+            matchRecorder.stop();
+        }
+        audioDispatcher.release();
         Log.i(TAG, "Service destroyed");
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.i(TAG, "Service Starting");
+        if (intent != null && intent.hasExtra(EXTRA_REPLAY_FILE)) {
+            pendingReplayFile = new File(intent.getStringExtra(EXTRA_REPLAY_FILE));
+            pendingReplaySpeed = intent.getFloatExtra(EXTRA_REPLAY_SPEED, 1);
+        }
+        if (eventLoop != null) {
+            startPendingReplay();
+        }
+        return START_STICKY;
+    }
+
+    /**
+     * Networking needs the player id and server address, so it starts once the configuration has
+     * been loaded, on the main thread but without waiting for it there.
+     */
+    private void onConfigReady(Config config) {
+        if (destroyed) {
+            return;
+        }
+        this.config = config;
         try {
-            heartbeatSocket = new DatagramSocket();
-            executorService.scheduleWithFixedDelay(this::heartbeat, 0, HEARTBEAT_INTERVAL, java.util.concurrent.TimeUnit.MILLISECONDS);
-            startUDPListener();
-            evaluateCurrentState();
+            eventLoop = new UdpEventLoop(LISTENING_PORT, this::onNetworkDatagram);
+            serverDiscovery = new ServerDiscovery(config, eventLoop, this::onServerSelected);
+            serverDiscovery.start();
+            if (config.isCapturePackets()) {
+                startPacketCapture();
+            }
+            startMatchRecording();
+            eventLoop.schedule(heartbeatTask, 0);
+            eventLoop.start();
+            startup.getTrace().mark("network started");
+            eventLoop.post(this::evaluateCurrentState);
         } catch (Exception e) {
             Log.e(TAG, "Service failed to start", e);
             stopSelf();
+            return;
+        }
+        startPendingReplay();
+    }
+
+    private void startPendingReplay() {
+        if (pendingReplayFile != null) {
+            startReplay(pendingReplayFile, pendingReplaySpeed);
+            pendingReplayFile = null;
+        }
+    }
+
+    private void startPacketCapture() {
+        var directory = getExternalFilesDir(CAPTURE_DIRECTORY);
+        try {
+            packetRecorder = new PacketRecorder(directory != null ? directory : new File(getFilesDir(), CAPTURE_DIRECTORY));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to start packet capture", e);
+        }
+    }
+
+    private void startMatchRecording() {
+        try {
+            matchRecorder = new MatchRecorder(new File(getFilesDir(), MATCH_DIRECTORY), config.getPlayerId());
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to start match recording", e);
+        }
+    }
+
+    /**
+     * Logs of past matches, newest first, to be opened with {@link net.lasertag.model.MatchLog}.
+     */
+    public File[] getMatchLogs() {
+        return matchRecorder != null ? matchRecorder.listMatches() : new File[0];
+    }
+
+    /**
+     * Plays a capture through the same decoding and event handling as live datagrams, for post-mortems
+     * and repeatable performance runs, e.g.
+     * {@code adb shell am start-foreground-service -n net.lasertag/.NetworkService --es net.lasertag.REPLAY_FILE <path> --ef net.lasertag.REPLAY_SPEED 0}
+     */
+    private void startReplay(File file, double speed) {
+        if (packetReplayer != null) {
+            packetReplayer.stop();
+        }
+        eventLoop.post(() -> {
+            replaySequenceTracker = new SequenceTracker();
+            replayInbox = new ReliableInbox();
+        });
+        try {
+            packetReplayer = new PacketReplayer(eventLoop, this::onDatagram, file, speed,
+                    () -> Log.i(TAG, dumpDiagnostics()));
+            packetReplayer.start();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open capture " + file, e);
         }
-        return START_STICKY;
     }
 
     private void heartbeat() {
-        if (System.currentTimeMillis() - lastPingTime > HEARTBEAT_TIMEOUT) {
+        adaptHeartbeat();
+        eventLoop.schedule(heartbeatTask, heartbeatInterval);
+        if (SystemClock.elapsedRealtime() - lastPingTime > heartbeatTimeout) {
             Log.i(TAG, "LostConnection");
+            if (isOnline) {
+                Log.i(TAG, dumpDiagnostics());
+            }
             isOnline = false;
             evaluateCurrentState();
+            forgetServerState();
+            serverDiscovery.start();
+        }
+        if (gameState.expireFragments(System.nanoTime())) {
+            Log.w(TAG, "Fragmented stats snapshot incomplete, showing partial roster");
+            requestStatsResync();
         }
         try {
-            byte[] message = new byte[] { UdpMessages.PING, config.getPlayerId(), firstEverMessage ? (byte) 1 : (byte) 0 };
-            var ip = config.getServerAddress() == null ? config.getBroadcastAddress() : config.getServerAddress();
-            DatagramPacket packet = new DatagramPacket(message, 3, ip, SERVER_PORT);
-            heartbeatSocket.send(packet);
+            pingBuffer.clear();
+            if (reliableInbox.hasReceived()) {
+                UdpMessageEncoder.encodePing(pingBuffer, config.getPlayerId(), firstEverMessage, pingSequence,
+                        reliableInbox.getLatest(), reliableInbox.getAckBits());
+            } else {
+                UdpMessageEncoder.encodePing(pingBuffer, config.getPlayerId(), firstEverMessage, pingSequence);
+            }
+            pingBuffer.flip();
+            if (serverDiscovery.isActive()) {
+                serverDiscovery.probe(pingBuffer);
+            } else {
+                eventLoop.send(pingBuffer, getServerEndpoint());
+            }
+            var sentNanos = System.nanoTime();
+            rttEstimator.onPingSent(pingSequence, sentNanos);
+            clockSync.onPingSent(pingSequence, sentNanos);
+            pingSequence = (pingSequence + 1) & 0xFFFF;
             firstEverMessage = false;
         } catch (Exception e) {
             Log.e(TAG, "Failed to send heartbeat", e);
         }
     }
 
-    private void startUDPListener() {
-        executorService.execute(() -> {
-            try (var socket = new DatagramSocket(LISTENING_PORT)) {
-                var buffer = new byte[512];
-                Log.i(TAG, "Listening on socket: " + socket.getLocalSocketAddress());
-                while (true) {
-                    var packet = new DatagramPacket(buffer, buffer.length);
-                    socket.receive(packet);
-                    var message = UdpMessages.fromBytes(packet.getData(), packet.getLength());
-                    if (config.getServerAddress() == null) {
-                        Log.i(TAG, "Server IP discovered: " + packet.getAddress());
-                        config.setServerAddress(packet.getAddress());
-                    }
-                    mainHandler.post(() -> sendUdpMessageToActivity(message));
-                    mainHandler.post(() -> handleEvent(message.getType(), message));
-                    lastPingTime = System.currentTimeMillis();
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to receive UDP message", e);
+    /**
+     * Pings often while looking for the server or playing, and rarely between games, when nothing
+     * happens and the radio can sleep. The link is given a few intervals plus the RTT timeout
+     * before it counts as lost, so a slow but working link does not flap to offline.
+     */
+    private void adaptHeartbeat() {
+        if (serverDiscovery.isActive()) {
+            heartbeatInterval = serverDiscovery.getProbeInterval(HEARTBEAT_INTERVAL);
+        } else {
+            heartbeatInterval = isOnline && !isGameRunning ? HEARTBEAT_INTERVAL_IDLE : HEARTBEAT_INTERVAL;
+        }
+        long rttTimeout = rttEstimator.getTimeoutMicros() / 1000;
+        heartbeatTimeout = Math.min(HEARTBEAT_MAX_TIMEOUT,
+                Math.max(HEARTBEAT_MIN_TIMEOUT, HEARTBEAT_MISSED_LIMIT * heartbeatInterval + rttTimeout));
+    }
+
+    /**
+     * Smoothed heartbeat round trip in microseconds, 0 until the first reply was measured.
+     */
+    public long getRttMicros() {
+        return rttEstimator.getSrttMicros();
+    }
+
+    private void onServerSelected(InetAddress address, long rttMicros) {
+        config.setServerAddress(address);
+        forgetServerState();
+    }
+
+    /**
+     * Drops what was learned from the previous server's numbering, which a new or restarted server
+     * starts over.
+     */
+    private void forgetServerState() {
+        sequenceTracker.reset();
+        gameState.reset();
+        reliableInbox.reset();
+    }
+
+    /**
+     * Address of the selected server, only valid once discovery has found one.
+     */
+    private InetSocketAddress getServerEndpoint() {
+        var address = config.getServerAddress();
+        if (serverEndpoint == null || !serverEndpoint.getAddress().equals(address)) {
+            serverEndpoint = new InetSocketAddress(address, SERVER_PORT);
+        }
+        return serverEndpoint;
+    }
+
+    private void onNetworkDatagram(ByteBuffer data, SocketAddress sender) {
+        if (packetRecorder != null) {
+            packetRecorder.record(data, System.nanoTime());
+        }
+        onDatagram(data, sender);
+    }
+
+    /**
+     * Sender is null for replayed datagrams. Those are deduplicated against a state of their own and
+     * kept out of the match logs, so that a replay leaves the live session alone.
+     */
+    private void onDatagram(ByteBuffer data, SocketAddress sender) {
+        var receivedNanos = System.nanoTime();
+        var live = sender != null;
+        if (live) {
+            var address = ((InetSocketAddress) sender).getAddress();
+            if ((serverDiscovery.isActive() || !address.equals(config.getServerAddress()))
+                    && !serverDiscovery.onDatagramFrom(address, receivedNanos)) {
+                return;
             }
-        });
+        }
+        var reliableId = UdpMessages.readReliableHeader(data);
+        var acknowledge = live && reliableId != UdpMessages.NO_SEQUENCE;
+        if (reliableId != UdpMessages.NO_SEQUENCE && !(live ? reliableInbox : replayInbox).accept(reliableId)) {
+            // a retransmission of a message already handed on, whose ack got lost
+            acknowledgeReliable(acknowledge);
+            return;
+        }
+        var sequence = UdpMessages.readSequenceHeader(data);
+        if (sequence != UdpMessages.NO_SEQUENCE
+                && !(live ? sequenceTracker : replaySequenceTracker).accept(data.get(data.position()), sequence)) {
+            acknowledgeReliable(acknowledge);
+            return;
+        }
+        var message = decoder.decode(data);
+        if (message instanceof AckMessage && live) {
+            var ack = (AckMessage) message;
+            rttEstimator.onPong(ack.getSequence(), receivedNanos);
+            clockSync.onPong(ack.getSequence(), ack.getServerReceiveMicros(), ack.getServerTransmitMicros(), receivedNanos);
+        } else if (message instanceof TimeMessage) {
+            anchorTimer((TimeMessage) message, receivedNanos);
+        }
+        message = applyToGameState(message, receivedNanos);
+        if (message instanceof EventMessage && matchRecorder != null && live) {
+            matchRecorder.record((EventMessage) message, receivedNanos);
+        }
+        if (message != null) {
+            message.setReceivedNanos(receivedNanos);
+            latencyTracker.record(message.getType(), LatencyTracker.STAGE_DECODED, receivedNanos);
+            audioDispatcher.dispatch(message);
+            handleEvent(message);
+            messageChannel.offer(message);
+        }
+        acknowledgeReliable(acknowledge);
+        lastPingTime = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Acknowledges right away instead of waiting for the next regular heartbeat. Only called once the
+     * message has been applied to the service's state and handed to the channel, which never drops an
+     * event, since the server stops retransmitting as soon as it sees the ack.
+     */
+    private void acknowledgeReliable(boolean acknowledge) {
+        if (acknowledge) {
+            eventLoop.schedule(heartbeatTask, 0);
+        }
+    }
+
+    /**
+     * Works out when the timer runs out in local time: from the server's end time once the clocks are
+     * synced, otherwise from the remaining time it shows, as of when it arrived.
+     */
+    private void anchorTimer(TimeMessage message, long receivedNanos) {
+        if (message.getEndsAtServerMicros() != ClockSync.NO_TIME && clockSync.isSynced()) {
+            message.setEndsAtNanos(clockSync.toLocalNanos(message.getEndsAtServerMicros()));
+        } else {
+            var seconds = message.getMinutes() * 60L + message.getSeconds();
+            message.setEndsAtNanos(receivedNanos + seconds * 1_000_000_000L);
+        }
+    }
+
+    /**
+     * Keeps the versioned roster up to date. Stats are handed on as a snapshot ordered by rank, and
+     * deltas and fragments are swallowed (null) when they cannot be applied. Every fragment yields a
+     * snapshot, so a large roster shows up as it arrives rather than when it is complete.
+     */
+    private UdpMessage applyToGameState(UdpMessage message, long receivedNanos) {
+        if (message instanceof StatsFragmentMessage) {
+            var result = gameState.applyFragment((StatsFragmentMessage) message, receivedNanos);
+            return result == GameStateStore.APPLIED || result == GameStateStore.PARTIAL ? gameState.snapshot() : null;
+        }
+        if (message instanceof StatsDeltaMessage) {
+            var result = gameState.applyDelta((StatsDeltaMessage) message);
+            if (result == GameStateStore.APPLIED) {
+                return gameState.snapshot();
+            }
+            if (result == GameStateStore.GAP) {
+                requestStatsResync();
+            }
+            return null;
+        }
+        if (message instanceof StatsMessage) {
+            gameState.applyFullStats((StatsMessage) message);
+            return gameState.snapshot();
+        }
+        return message;
+    }
+
+    private void requestStatsResync() {
+        long now = SystemClock.elapsedRealtime();
+        if (config.getServerAddress() == null || now - lastResyncRequestTime < STATS_RESYNC_INTERVAL) {
+            return;
+        }
+        lastResyncRequestTime = now;
+        try {
+            resyncRequest.clear();
+            resyncRequest.put(UdpMessages.STATS_RESYNC).put(config.getPlayerId());
+            resyncRequest.flip();
+            eventLoop.send(resyncRequest, getServerEndpoint());
+            Log.i(TAG, "Stats sequence gap, requested resync after " + gameState.getSequence());
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to request stats resync", e);
+        }
     }
 
     private void evaluateCurrentState() {
@@ -179,70 +555,65 @@ public class NetworkService extends Service {
     }
 
     private void sendCurrentStateToActivity() {
-        Intent broadcastIntent = new Intent("CURRENT_STATE");
-        broadcastIntent.putExtra("state", currentState);
-        broadcastIntent.putExtra("teamPlay", teamPlay);
-        sendBroadcast(broadcastIntent);
+        mainHandler.post(stateDelivery);
     }
 
-    private void sendUdpMessageToActivity(UdpMessage message) {
-        if (message == null) {
-            return;
+    private void deliverCurrentState() {
+        if (listener != null) {
+            listener.onStateChanged(currentState, teamPlay);
         }
-        if (isActive) {
-            Intent broadcastIntent = new Intent("UDP_MESSAGE_RECEIVED");
-            broadcastIntent.putExtra("message", message);
-            sendBroadcast(broadcastIntent);
-        } else if (message instanceof StatsMessage) {
-            lastStatsMessage = (StatsMessage) message;
-        } else if (message instanceof EventMessage) {
-            lastEventMessage = (EventMessage) message;
+    }
+
+    private void onMessageDelivered(UdpMessage message) {
+        latencyTracker.record(message.getType(), LatencyTracker.STAGE_DISPATCHED, message.getReceivedNanos());
+        sendUdpMessageToActivity(message);
+    }
+
+    private void sendUdpMessageToActivity(UdpMessage message) {
+        if (isActive && listener != null) {
+            listener.onUdpMessage(message);
+        } else {
+            missedMessages.add(message);
         }
     }
 
-    private void handleEvent(byte eventType, UdpMessage message) {
-        isOnline = true;
-        switch (eventType) {
-            case UdpMessages.GUN_SHOT -> soundManager.playGunShot();
-            case UdpMessages.GUN_RELOAD -> soundManager.playReload();
-            case UdpMessages.YOU_HIT_SOMEONE -> soundManager.playYouHitSomeone();
-            case UdpMessages.GOT_HIT -> soundManager.playGotHit();
-            case UdpMessages.RESPAWN -> {
-                soundManager.playRespawn();
-                isGameRunning = true;
-                isPlayerDead = false;
-            }
-            case UdpMessages.GAME_OVER -> {
-                soundManager.playGameOver();
-                isGameRunning = false;
-            }
-            case UdpMessages.GAME_START -> {
-                soundManager.playGameStart();
-                teamPlay = ((EventMessage) message).getCounterpartPlayerId() != 0;
-            }
-            case UdpMessages.YOU_KILLED -> {
-                soundManager.playYouKilled();
-                isPlayerDead = true;
-            }
-            case UdpMessages.YOU_SCORED -> soundManager.playYouScored();
-            case UdpMessages.GUN_NO_BULLETS -> soundManager.playNoBullets();
-            case UdpMessages.FULL_STATS -> {
-                var statsMessage = (StatsMessage) message;
-                isGameRunning = statsMessage.isGameRunning();
-                teamPlay = statsMessage.isTeamPlay();
-                Arrays.stream(statsMessage.getPlayers())
-                        .filter(p -> p.getId() == config.getPlayerId())
-                        .findFirst()
-                        .ifPresent(p -> isPlayerDead = p.getHealth() <= 0);
-            }
-            case UdpMessages.GAME_TIMER -> {}
+    private MessageDispatcher createStateHandlers() {
+        return new MessageDispatcher()
+                .on(UdpMessages.RESPAWN, (EventMessage message) -> {
+                    isGameRunning = true;
+                    isPlayerDead = false;
+                })
+                .on(UdpMessages.GAME_OVER, (EventMessage message) -> isGameRunning = false)
+                .on(UdpMessages.GAME_START, (EventMessage message) -> teamPlay = message.getCounterpartPlayerId() != 0)
+                .on(UdpMessages.YOU_KILLED, (EventMessage message) -> isPlayerDead = true)
+                .on(UdpMessages.FULL_STATS, (StatsMessage message) -> {
+                    isGameRunning = message.isGameRunning();
+                    teamPlay = message.isTeamPlay();
+                    for (Player player : message.getPlayers()) {
+                        if (player.getId() == config.getPlayerId()) {
+                            isPlayerDead = player.getHealth() <= 0;
+                            break;
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Event loop only. Runs before the message is handed to the main thread, so the service's own state
+     * does not wait for, or depend on, the UI keeping up.
+     */
+    private void handleEvent(UdpMessage message) {
+        if (!isOnline && startup.getTrace().markOnce("online")) {
+            Log.i(TAG, dumpStartupTrace());
         }
+        isOnline = true;
+        stateHandlers.dispatch(message);
         evaluateCurrentState();
     }
 
     @Override
     public IBinder onBind(Intent intent) {
-        return null; // We don't need binding for this service
+        return binder;
     }
 }
 
@@ -0,0 +1,170 @@
+package net.lasertag;
+
+import static net.lasertag.Config.TAG;
+
+import android.util.Log;
+
+import net.lasertag.model.CaptureFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends every received datagram to a memory-mapped {@link CaptureFile}.
+ * <p>
+ * The network thread only copies the datagram into a fixed-size ring, and a background thread moves
+ * the ring into the file every {@link #FLUSH_INTERVAL_MILLIS}. When the writer falls behind by more
+ * than the ring holds, datagrams are dropped and counted rather than stalling the receive path.
+ */
+public class PacketRecorder {
+
+    private static final int RING_SIZE = 256 * 1024;
+    private static final int RING_MASK = RING_SIZE - 1;
+    private static final long MAP_CHUNK = 1024 * 1024;
+    private static final long MAX_FILE_SIZE = 64 * MAP_CHUNK;
+    private static final long FLUSH_INTERVAL_MILLIS = 100;
+
+    private final byte[] ring = new byte[RING_SIZE];
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final byte[] recordHeader = new byte[CaptureFile.RECORD_HEADER_SIZE];
+    private final ByteBuffer recordHeaderView = ByteBuffer.wrap(recordHeader).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final Thread writer;
+    private MappedByteBuffer mapped;
+    private long mappedOffset = 0;
+    private long written = 0;
+
+    private volatile boolean running = true;
+    private volatile long recordedCount = 0;
+    private volatile long droppedCount = 0;
+
+    public PacketRecorder(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        long startMillis = System.currentTimeMillis();
+        file = new File(directory, "capture-" + startMillis + ".bin");
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, MAP_CHUNK);
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        CaptureFile.writeHeader(mapped, startMillis);
+        written = CaptureFile.HEADER_SIZE;
+        writer = new Thread(this::writeLoop, "PacketRecorder");
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+        Log.i(TAG, "Recording packets to " + file);
+    }
+
+    /**
+     * Producer side, called from the network thread. Leaves the buffer's position untouched.
+     */
+    public void record(ByteBuffer data, long receivedNanos) {
+        int length = data.remaining();
+        int size = CaptureFile.RECORD_HEADER_SIZE + length;
+        long t = tail.get();
+        if (length == 0 || length > CaptureFile.MAX_DATAGRAM_SIZE || t - head.get() + size > RING_SIZE) {
+            droppedCount++;
+            return;
+        }
+        recordHeaderView.clear();
+        recordHeaderView.putLong(receivedNanos).putShort((short) length);
+        copyIn(t, recordHeader, CaptureFile.RECORD_HEADER_SIZE);
+        copyIn(t + CaptureFile.RECORD_HEADER_SIZE, data, length);
+        tail.lazySet(t + size);
+        recordedCount++;
+    }
+
+    private void copyIn(long at, byte[] source, int length) {
+        int index = (int) (at & RING_MASK);
+        int first = Math.min(length, RING_SIZE - index);
+        System.arraycopy(source, 0, ring, index, first);
+        System.arraycopy(source, first, ring, 0, length - first);
+    }
+
+    private void copyIn(long at, ByteBuffer source, int length) {
+        int index = (int) (at & RING_MASK);
+        int first = Math.min(length, RING_SIZE - index);
+        int position = source.position();
+        source.get(ring, index, first);
+        source.get(ring, 0, length - first);
+        source.position(position);
+    }
+
+    private void writeLoop() {
+        try {
+            while (running) {
+                Thread.sleep(FLUSH_INTERVAL_MILLIS);
+                flush();
+            }
+            flush();
+        } catch (InterruptedException ignored) {
+        } catch (IOException e) {
+            Log.e(TAG, "Packet capture failed, recording stopped", e);
+            running = false;
+        } finally {
+            close();
+        }
+    }
+
+    private void flush() throws IOException {
+        long h = head.get();
+        long t = tail.get();
+        while (h < t) {
+            if (written >= MAX_FILE_SIZE) {
+                if (running) {
+                    Log.w(TAG, "Capture file is full, recording stopped");
+                    running = false;
+                }
+                return;
+            }
+            if (!mapped.hasRemaining()) {
+                mappedOffset += MAP_CHUNK;
+                mapped = channel.map(FileChannel.MapMode.READ_WRITE, mappedOffset, MAP_CHUNK);
+            }
+            int index = (int) (h & RING_MASK);
+            int length = (int) Math.min(Math.min(t - h, RING_SIZE - index), mapped.remaining());
+            mapped.put(ring, index, length);
+            h += length;
+            written += length;
+            head.lazySet(h);
+        }
+    }
+
+    private void close() {
+        try {
+            mapped.force();
+            channel.truncate(written);
+            raf.close();
+            Log.i(TAG, "Capture " + file + " closed: " + recordedCount + " datagrams, "
+                    + droppedCount + " dropped, " + written + " bytes");
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to close capture " + file, e);
+        }
+    }
+
+    /**
+     * Writes out what is still buffered and closes the file on the writer thread.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    public long getRecordedCount() {
+        return recordedCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+}
@@ -0,0 +1,89 @@
+package net.lasertag;
+
+import static net.lasertag.Config.TAG;
+
+import android.util.Log;
+
+import net.lasertag.model.CaptureFile;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Feeds a {@link CaptureFile} back through the datagram handler on the event loop thread, as if the
+ * datagrams had just arrived. Speed 1 keeps the recorded timing, 4 plays four times faster, and 0 or
+ * less replays as fast as the loop can go, in batches so timers and live traffic still get their turn.
+ */
+public class PacketReplayer {
+
+    private static final int BATCH_SIZE = 256;
+
+    private final UdpEventLoop eventLoop;
+    private final UdpEventLoop.DatagramHandler handler;
+    private final CaptureFile capture;
+    private final double speed;
+    private final Runnable stepTask = this::step;
+    private final Runnable onFinished;
+
+    private boolean pending = false;
+    private long firstTimestampNanos;
+    private long startNanos;
+    private long replayedCount = 0;
+
+    public PacketReplayer(UdpEventLoop eventLoop, UdpEventLoop.DatagramHandler handler, File file, double speed,
+                          Runnable onFinished) throws IOException {
+        this.eventLoop = eventLoop;
+        this.handler = handler;
+        this.capture = new CaptureFile(file);
+        this.speed = speed;
+        this.onFinished = onFinished;
+    }
+
+    /**
+     * Safe to call from any thread.
+     */
+    public void start() {
+        eventLoop.post(() -> {
+            Log.i(TAG, "Replaying capture from " + capture.getStartMillis() + " at speed " + (speed > 0 ? speed : "max"));
+            pending = capture.next();
+            firstTimestampNanos = capture.getTimestampNanos();
+            startNanos = System.nanoTime();
+            step();
+        });
+    }
+
+    public void stop() {
+        eventLoop.post(() -> {
+            eventLoop.cancel(stepTask);
+            pending = false;
+        });
+    }
+
+    private void step() {
+        int batch = 0;
+        while (pending) {
+            if (speed > 0) {
+                long dueNanos = startNanos + (long) ((capture.getTimestampNanos() - firstTimestampNanos) / speed);
+                long waitNanos = dueNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    eventLoop.schedule(stepTask, Math.max(1, waitNanos / 1_000_000));
+                    return;
+                }
+            } else if (batch == BATCH_SIZE) {
+                eventLoop.post(stepTask);
+                return;
+            }
+            try {
+                handler.onDatagram(capture.getData(), null);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to replay datagram " + replayedCount, e);
+            }
+            replayedCount++;
+            batch++;
+            pending = capture.next();
+        }
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        Log.i(TAG, "Replay finished: " + replayedCount + " datagrams in " + elapsedMillis + " ms");
+        onFinished.run();
+    }
+}
@@ -0,0 +1,214 @@
+package net.lasertag;
+
+import static net.lasertag.Config.TAG;
+
+import android.content.Context;
+import android.graphics.Paint;
+import android.util.Log;
+import android.view.View;
+import android.widget.LinearLayout;
+import android.widget.TableLayout;
+import android.widget.TableRow;
+import android.widget.TextView;
+
+import androidx.core.content.res.ResourcesCompat;
+
+import net.lasertag.model.Player;
+import net.lasertag.model.Standings;
+
+/**
+ * Keeps the players table and the team scores bar in sync with the roster without rebuilding them.
+ * <p>
+ * Each player gets one cached row, keyed by player id. On update only the cells whose value changed
+ * are touched, and a row is only moved when that player's rank changed. Rows of players that left
+ * are detached but kept for reuse.
+ */
+public class Scoreboard {
+
+    private static final int MAX_ID = 256;
+    private static final int HEADER_ROWS = 1;
+
+    private static class RowHolder {
+        TableRow row;
+        TextView nameText;
+        TextView scoreText;
+        TextView healthText;
+        String name;
+        int score = Integer.MIN_VALUE;
+        int health = Integer.MIN_VALUE;
+        int teamId = Integer.MIN_VALUE;
+        boolean styled = false;
+        boolean dead;
+    }
+
+    private final Context context;
+    private final Config config;
+    private final TableLayout playersTable;
+    private final LinearLayout teamScoresBar;
+    private final RowHolder[] rowsById = new RowHolder[MAX_ID];
+    private final TextView[] teamScoreViews = new TextView[MAX_ID];
+    private final int[] shownTeamScores = new int[MAX_ID];
+    private final int textColorAlive;
+    private final int textColorDead;
+
+    private long placedRankVersion = -1;
+    private int viewsCreatedLastUpdate = 0;
+    private long viewsCreatedTotal = 0;
+
+    public Scoreboard(Context context, Config config, TableLayout playersTable, LinearLayout teamScoresBar) {
+        this.context = context;
+        this.config = config;
+        this.playersTable = playersTable;
+        this.teamScoresBar = teamScoresBar;
+        textColorAlive = ResourcesCompat.getColor(context.getResources(), R.color.white, null);
+        textColorDead = ResourcesCompat.getColor(context.getResources(), R.color.black, null);
+    }
+
+    /**
+     * Rows are ordered by the standings, which must already reflect the given players.
+     */
+    public void update(Player[] players, Standings standings, boolean teamPlay) {
+        viewsCreatedLastUpdate = 0;
+        for (Player player : players) {
+            var holder = rowsById[player.getId() & 0xFF];
+            if (holder == null) {
+                holder = createRow();
+                rowsById[player.getId() & 0xFF] = holder;
+            }
+            bind(holder, player);
+        }
+        if (standings.getRankVersion() != placedRankVersion) {
+            placedRankVersion = standings.getRankVersion();
+            for (int rank = 0; rank < standings.getPlayerCount(); rank++) {
+                placeRow(rowsById[standings.getIdAt(rank) & 0xFF].row, HEADER_ROWS + rank);
+            }
+        }
+        int extraRows = playersTable.getChildCount() - HEADER_ROWS - players.length;
+        if (extraRows > 0) {
+            playersTable.removeViews(HEADER_ROWS + players.length, extraRows);
+        }
+        updateTeamScores(standings, teamPlay);
+        if (viewsCreatedLastUpdate > 0) {
+            Log.d(TAG, "Scoreboard created " + viewsCreatedLastUpdate + " views, " + viewsCreatedTotal + " total");
+        }
+    }
+
+    public int getViewsCreatedLastUpdate() {
+        return viewsCreatedLastUpdate;
+    }
+
+    public long getViewsCreatedTotal() {
+        return viewsCreatedTotal;
+    }
+
+    private void placeRow(TableRow row, int index) {
+        if (playersTable.getChildAt(index) == row) {
+            return;
+        }
+        if (row.getParent() != null) {
+            playersTable.removeView(row);
+        }
+        playersTable.addView(row, index);
+    }
+
+    private void bind(RowHolder holder, Player player) {
+        if (!player.getName().equals(holder.name)) {
+            holder.name = player.getName();
+            holder.nameText.setText(holder.name);
+        }
+        if (player.getScore() != holder.score) {
+            holder.score = player.getScore();
+            holder.scoreText.setText(String.valueOf(holder.score));
+        }
+        if (player.getHealth() != holder.health) {
+            holder.health = player.getHealth();
+            holder.healthText.setText(String.valueOf(holder.health));
+        }
+        if (player.getTeamId() != holder.teamId) {
+            holder.teamId = player.getTeamId();
+            holder.row.setBackgroundColor(ResourcesCompat.getColor(context.getResources(), config.getTeamColor(holder.teamId, true), null));
+        }
+        boolean dead = player.getHealth() <= 0;
+        if (!holder.styled || holder.dead != dead) {
+            holder.styled = true;
+            holder.dead = dead;
+            styleCell(holder.nameText, dead);
+            styleCell(holder.scoreText, dead);
+            styleCell(holder.healthText, dead);
+        }
+    }
+
+    private void styleCell(TextView text, boolean dead) {
+        if (dead) {
+            text.setPaintFlags(text.getPaintFlags() | Paint.STRIKE_THRU_TEXT_FLAG);
+            text.setTextColor(textColorDead);
+        } else {
+            text.setPaintFlags(text.getPaintFlags() & ~Paint.STRIKE_THRU_TEXT_FLAG);
+            text.setTextColor(textColorAlive);
+        }
+    }
+
+    private RowHolder createRow() {
+        var holder = new RowHolder();
+        holder.row = new TableRow(context);
+        holder.row.setPadding(8, 8, 8, 8);
+        holder.nameText = createCell(holder.row, 2);
+        holder.scoreText = createCell(holder.row, 1);
+        holder.healthText = createCell(holder.row, 1);
+        viewsCreatedLastUpdate += 4;
+        viewsCreatedTotal += 4;
+        return holder;
+    }
+
+    private TextView createCell(TableRow row, float weight) {
+        TextView text = new TextView(context);
+        text.setLayoutParams(new TableRow.LayoutParams(0, TableRow.LayoutParams.WRAP_CONTENT, weight));
+        text.setPadding(8, 8, 8, 8);
+        row.addView(text);
+        return text;
+    }
+
+    private void updateTeamScores(Standings standings, boolean teamPlay) {
+        for (int t = 0; t < MAX_ID; t++) {
+            var view = teamScoreViews[t];
+            if (!teamPlay || !standings.hasTeam(t)) {
+                if (view != null && view.getVisibility() != View.GONE) {
+                    view.setVisibility(View.GONE);
+                }
+                continue;
+            }
+            if (view == null) {
+                view = createTeamScoreView(t);
+            }
+            if (view.getVisibility() != View.VISIBLE) {
+                view.setVisibility(View.VISIBLE);
+            }
+            var teamScore = standings.getTeamScore(t);
+            if (shownTeamScores[t] != teamScore || view.getText().length() == 0) {
+                shownTeamScores[t] = teamScore;
+                view.setText(String.valueOf(teamScore));
+            }
+        }
+    }
+
+    private TextView createTeamScoreView(int teamId) {
+        TextView teamScore = new TextView(context);
+        teamScore.setTextColor(textColorAlive);
+        teamScore.setPadding(16, 8, 8, 8);
+        teamScore.setTextSize(30);
+        teamScore.setBackgroundColor(ResourcesCompat.getColor(context.getResources(), config.getTeamColor(teamId, true), null));
+        teamScore.setLayoutParams(new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.MATCH_PARENT, 1));
+        // keep the bar ordered by team id
+        int index = 0;
+        for (int t = 0; t < teamId; t++) {
+            if (teamScoreViews[t] != null) {
+                index++;
+            }
+        }
+        teamScoresBar.addView(teamScore, index);
+        teamScoreViews[teamId] = teamScore;
+        viewsCreatedLastUpdate++;
+        viewsCreatedTotal++;
+        return teamScore;
+    }
+}
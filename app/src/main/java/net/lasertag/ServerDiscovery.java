@@ -0,0 +1,183 @@
+package net.lasertag;
+
+import static net.lasertag.Config.SERVER_PORT;
+import static net.lasertag.Config.TAG;
+
+import android.util.Log;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the game server while the link is down: the same heartbeat is sent at once to the last known
+ * server, to the directed broadcast address of every local IPv4 subnet and to 255.255.255.255.
+ * <p>
+ * Every server that answers becomes a candidate with the time its answer took. The known server is
+ * taken as soon as it answers. Otherwise the candidates get {@link #SELECTION_WINDOW_MILLIS} from the
+ * first answer to show up, and the one with the lowest RTT wins, so a venue can run several servers
+ * on one network. Runs on the event loop thread.
+ */
+public class ServerDiscovery {
+
+    public interface Listener {
+        void onServerSelected(InetAddress address, long rttMicros);
+    }
+
+    private static final long SELECTION_WINDOW_MILLIS = 150;
+    private static final long FIRST_PROBE_INTERVAL_MILLIS = 250;
+    private static final int MAX_CANDIDATES = 8;
+
+    private final Config config;
+    private final UdpEventLoop eventLoop;
+    private final Listener listener;
+    private final Runnable selectTask = this::selectBest;
+    private final List<InetSocketAddress> targets = new ArrayList<>();
+    private final InetAddress[] candidates = new InetAddress[MAX_CANDIDATES];
+    private final long[] candidateRttMicros = new long[MAX_CANDIDATES];
+    private int candidateCount = 0;
+
+    private boolean active = false;
+    private long roundStartNanos;
+    private long probeSentNanos;
+    private int roundProbes = 0;
+    private long probesSent = 0;
+    private long foreignDatagrams = 0;
+
+    public ServerDiscovery(Config config, UdpEventLoop eventLoop, Listener listener) {
+        this.config = config;
+        this.eventLoop = eventLoop;
+        this.listener = listener;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Starts a discovery round, looking up the local subnets again in case the network changed.
+     */
+    public void start() {
+        if (active) {
+            return;
+        }
+        active = true;
+        candidateCount = 0;
+        roundProbes = 0;
+        roundStartNanos = System.nanoTime();
+        targets.clear();
+        var known = config.getServerAddress() != null ? config.getServerAddress() : config.getLastServerAddress();
+        if (known != null) {
+            targets.add(new InetSocketAddress(known, SERVER_PORT));
+        }
+        addSubnetBroadcasts();
+        targets.add(new InetSocketAddress(config.getBroadcastAddress(), SERVER_PORT));
+        Log.i(TAG, "Discovering server, probing " + targets);
+    }
+
+    private void addSubnetBroadcasts() {
+        try {
+            for (var networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (!networkInterface.isUp() || networkInterface.isLoopback()) {
+                    continue;
+                }
+                for (var interfaceAddress : networkInterface.getInterfaceAddresses()) {
+                    var broadcast = interfaceAddress.getBroadcast();
+                    if (interfaceAddress.getAddress() instanceof Inet4Address && broadcast != null) {
+                        targets.add(new InetSocketAddress(broadcast, SERVER_PORT));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to list network interfaces", e);
+        }
+    }
+
+    /**
+     * Sends the heartbeat to every probe target. The buffer is rewound for each of them.
+     */
+    public void probe(ByteBuffer ping) {
+        probeSentNanos = System.nanoTime();
+        roundProbes++;
+        for (var target : targets) {
+            try {
+                ping.rewind();
+                eventLoop.send(ping, target);
+                probesSent++;
+            } catch (Exception e) {
+                Log.w(TAG, "Probe to " + target + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Probes go out quickly right after the link is lost and back off to the regular heartbeat.
+     */
+    public long getProbeInterval(long heartbeatInterval) {
+        return Math.min(heartbeatInterval, FIRST_PROBE_INTERVAL_MILLIS << Math.min(roundProbes, 8));
+    }
+
+    /**
+     * Called for every datagram while discovering, and for datagrams from any other address than the
+     * selected server otherwise. Returns true when the sender is the selected server and the datagram
+     * should be processed.
+     */
+    public boolean onDatagramFrom(InetAddress address, long receivedNanos) {
+        if (!active) {
+            foreignDatagrams++;
+            return false;
+        }
+        var rttMicros = (receivedNanos - probeSentNanos) / 1000;
+        if (address.equals(config.getServerAddress()) || address.equals(config.getLastServerAddress())) {
+            select(address, rttMicros);
+            return true;
+        }
+        for (int i = 0; i < candidateCount; i++) {
+            if (candidates[i].equals(address)) {
+                return false;
+            }
+        }
+        if (candidateCount < MAX_CANDIDATES) {
+            candidates[candidateCount] = address;
+            candidateRttMicros[candidateCount++] = rttMicros;
+            Log.i(TAG, "Server candidate " + address + ", rtt " + rttMicros + "us");
+        }
+        if (candidateCount == 1) {
+            eventLoop.schedule(selectTask, SELECTION_WINDOW_MILLIS);
+        }
+        return false;
+    }
+
+    private void selectBest() {
+        if (!active || candidateCount == 0) {
+            return;
+        }
+        int best = 0;
+        for (int i = 1; i < candidateCount; i++) {
+            if (candidateRttMicros[i] < candidateRttMicros[best]) {
+                best = i;
+            }
+        }
+        select(candidates[best], candidateRttMicros[best]);
+    }
+
+    private void select(InetAddress address, long rttMicros) {
+        active = false;
+        eventLoop.cancel(selectTask);
+        Log.i(TAG, "Server selected: " + address + " out of " + Math.max(1, candidateCount) + " responders, rtt "
+                + rttMicros + "us, " + (System.nanoTime() - roundStartNanos) / 1_000_000 + "ms after discovery started");
+        listener.onServerSelected(address, rttMicros);
+    }
+
+    public void dump(StringBuilder out) {
+        out.append("discovery ").append(active ? "active" : "idle")
+                .append(" probes=").append(probesSent)
+                .append(" candidates=").append(candidateCount)
+                .append(" foreign=").append(foreignDatagrams).append('\n');
+    }
+}
@@ -1,91 +1,105 @@
 package net.lasertag;
 
+import static net.lasertag.Config.TAG;
+
 import android.content.Context;
 import android.media.AudioAttributes;
 import android.media.SoundPool;
+import android.util.Log;
 
 public class SoundManager {
 
-    private final SoundPool soundPool;
-
-    private final int gunShotSound;
-    private final int gotHitSound;
-    private final int youHitSomeoneSound;
-    private final int noBulletsSound;
-    private final int reloadSound;
-    private final int youKilledSound;
-    private final int respawnSound;
-    private final int gameOverSound;
-    private final int gameStartSound;
-    private final int youScoredSound;
+    public static final int GUN_SHOT = 0;
+    public static final int GOT_HIT = 1;
+    public static final int YOU_HIT_SOMEONE = 2;
+    public static final int NO_BULLETS = 3;
+    public static final int RELOAD = 4;
+    public static final int YOU_KILLED = 5;
+    public static final int RESPAWN = 6;
+    public static final int GAME_OVER = 7;
+    public static final int GAME_START = 8;
+    public static final int YOU_SCORED = 9;
+    public static final int SOUNDS = 10;
+
+    private static final int[] RESOURCES = {
+            R.raw.fire, R.raw.hitby, R.raw.hit, R.raw.noammo, R.raw.reload,
+            R.raw.death, R.raw.respawn, R.raw.game_over, R.raw.game_start, R.raw.you_scored
+    };
+    /** When SoundPool runs out of streams it stops the lowest priority one, or refuses a new sound of lower priority. */
+    private static final int[] PRIORITIES = {0, 2, 2, 0, 1, 4, 3, 5, 5, 3};
+    /** Streams of the same sound allowed to overlap; the oldest one is cut to make room for the next. */
+    private static final int[] MAX_OVERLAP = {2, 2, 2, 1, 1, 1, 1, 1, 1, 1};
+    private static final int MAX_STREAMS = 6;
 
-    public SoundManager(Context context) {
+    private final SoundPool soundPool;
+    private final int[] soundIds = new int[SOUNDS];
+    private final int[][] streams = new int[SOUNDS][];
+    private final int[] streamCursor = new int[SOUNDS];
+    private final Runnable onAllLoaded;
+    private volatile int loadedMask = 0;
+
+    /**
+     * Queues the sample loads, which complete asynchronously; onAllLoaded runs once they all have.
+     */
+    public SoundManager(Context context, Runnable onAllLoaded) {
+        this.onAllLoaded = onAllLoaded;
         AudioAttributes audioAttributes = new AudioAttributes.Builder()
                 .setUsage(AudioAttributes.USAGE_GAME)
                 .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
                 .build();
         soundPool = new SoundPool.Builder()
-                .setMaxStreams(5)
+                .setMaxStreams(MAX_STREAMS)
                 .setAudioAttributes(audioAttributes)
                 .build();
+        soundPool.setOnLoadCompleteListener(this::onLoadComplete);
 
-        gunShotSound = soundPool.load(context, R.raw.fire, 1);
-        gotHitSound = soundPool.load(context, R.raw.hitby, 1);
-        youHitSomeoneSound = soundPool.load(context, R.raw.hit, 1);
-        noBulletsSound = soundPool.load(context, R.raw.noammo, 1);
-        reloadSound = soundPool.load(context, R.raw.reload, 1);
-        youKilledSound = soundPool.load(context, R.raw.death, 1);
-        respawnSound = soundPool.load(context, R.raw.respawn, 1);
-        gameOverSound = soundPool.load(context, R.raw.game_over, 1);
-        gameStartSound = soundPool.load(context, R.raw.game_start, 1);
-        youScoredSound = soundPool.load(context, R.raw.you_scored, 1);
-    }
-
-    public void release() {
-        soundPool.release();
-    }
-
-    private void play(int soundId) {
-        soundPool.play(soundId, 1, 1, 0, 0, 1);
-    }
-
-    public void playGunShot() {
-        play(gunShotSound);
-    }
-
-    public void playGotHit() {
-        play(gotHitSound);
+        for (int sound = 0; sound < SOUNDS; sound++) {
+            streams[sound] = new int[MAX_OVERLAP[sound]];
+            soundIds[sound] = soundPool.load(context, RESOURCES[sound], 1);
+        }
     }
 
-    public void playYouHitSomeone() {
-        play(youHitSomeoneSound);
+    private synchronized void onLoadComplete(SoundPool pool, int sampleId, int status) {
+        if (status != 0) {
+            Log.e(TAG, "Failed to load sample " + sampleId + ", status " + status);
+            return;
+        }
+        for (int sound = 0; sound < SOUNDS; sound++) {
+            if (soundIds[sound] == sampleId) {
+                loadedMask |= 1 << sound;
+            }
+        }
+        if (isAllLoaded()) {
+            onAllLoaded.run();
+        }
     }
 
-    public void playNoBullets() {
-        play(noBulletsSound);
+    public boolean isLoaded(int sound) {
+        return (loadedMask & (1 << sound)) != 0;
     }
 
-    public void playReload() {
-        play(reloadSound);
+    public boolean isAllLoaded() {
+        return loadedMask == (1 << SOUNDS) - 1;
     }
 
-    public void playYouKilled() {
-        play(youKilledSound);
-    }
-
-    public void playRespawn() {
-        play(respawnSound);
-    }
-
-    public void playGameOver() {
-        play(gameOverSound);
-    }
-
-    public void playGameStart() {
-        play(gameStartSound);
+    public void release() {
+        soundPool.release();
     }
 
-    public void playYouScored() {
-        play(youScoredSound);
+    /**
+     * Plays the sound unless it is still being decoded. Not thread-safe, call from a single thread.
+     */
+    public void play(int sound) {
+        if (!isLoaded(sound)) {
+            Log.w(TAG, "Sound " + sound + " is not loaded yet, skipped");
+            return;
+        }
+        var ring = streams[sound];
+        var slot = streamCursor[sound];
+        if (ring[slot] != 0) {
+            soundPool.stop(ring[slot]);
+        }
+        ring[slot] = soundPool.play(soundIds[sound], 1, 1, PRIORITIES[sound], 0, 1);
+        streamCursor[sound] = (slot + 1) % ring.length;
     }
 }
@@ -0,0 +1,235 @@
+package net.lasertag;
+
+import static net.lasertag.Config.TAG;
+
+import android.media.AudioAttributes;
+import android.media.SoundPool;
+import android.os.Handler;
+import android.os.Looper;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Announcements rendered to audio ahead of time, so a known phrase plays through SoundPool the moment
+ * it is needed instead of waiting for the speech engine, and does not queue behind earlier phrases.
+ * <p>
+ * Phrases are synthesized one at a time in the background, so live speech never waits behind more
+ * than one of them. A phrase spoken before its clip is ready falls back to live speech and is then
+ * cached too. Fixed phrases, such as the countdown, are kept for as long as the cache lives; of the
+ * others, the least recently played clips are evicted beyond {@link #MAX_CLIPS} or {@link #MAX_BYTES}.
+ * Main thread only.
+ */
+public class SpeechCache {
+
+    private static final int MAX_CLIPS = 64;
+    private static final long MAX_BYTES = 8 * 1024 * 1024;
+    private static final int MAX_STREAMS = 2;
+    private static final String UTTERANCE_PREFIX = "clip-";
+
+    private static class Clip {
+        final String text;
+        final File file;
+        int soundId;
+        long bytes;
+        boolean ready;
+
+        Clip(String text, File file) {
+            this.text = text;
+            this.file = file;
+        }
+    }
+
+    private final TextToSpeech textToSpeech;
+    private final File directory;
+    private final SoundPool soundPool;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LinkedHashMap<String, Clip> clips = new LinkedHashMap<>(MAX_CLIPS, 0.75f, true);
+    private final Map<String, Clip> fixedClips = new HashMap<>();
+    private final Set<String> fixedTexts = new HashSet<>();
+    private final Map<Integer, Clip> clipsBySoundId = new HashMap<>();
+    private final ArrayDeque<String> pending = new ArrayDeque<>();
+    private Clip synthesizing;
+    private boolean engineReady = false;
+    private int nextClipId = 0;
+    private long totalBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    public SpeechCache(TextToSpeech textToSpeech, File directory) {
+        this.textToSpeech = textToSpeech;
+        this.directory = directory;
+        deleteClipFiles();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create " + directory);
+        }
+        soundPool = new SoundPool.Builder()
+                .setMaxStreams(MAX_STREAMS)
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_GAME)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                        .build())
+                .build();
+        soundPool.setOnLoadCompleteListener(this::onLoadComplete);
+        textToSpeech.setOnUtteranceProgressListener(new UtteranceProgressListener() {
+            @Override
+            public void onStart(String utteranceId) {}
+
+            @Override
+            public void onDone(String utteranceId) {
+                if (utteranceId != null && utteranceId.startsWith(UTTERANCE_PREFIX)) {
+                    mainHandler.post(() -> onSynthesized(true));
+                }
+            }
+
+            @Override
+            public void onError(String utteranceId) {
+                if (utteranceId != null && utteranceId.startsWith(UTTERANCE_PREFIX)) {
+                    mainHandler.post(() -> onSynthesized(false));
+                }
+            }
+        });
+    }
+
+    /**
+     * To be called once the speech engine has initialized and its language and rate are set.
+     */
+    public void onEngineReady() {
+        engineReady = true;
+        synthesizeNext();
+    }
+
+    /**
+     * Queues the phrase for rendering unless it is cached or queued already.
+     */
+    public void prepare(String text) {
+        if (clips.containsKey(text) || fixedClips.containsKey(text) || pending.contains(text)
+                || (synthesizing != null && synthesizing.text.equals(text))) {
+            return;
+        }
+        pending.add(text);
+        synthesizeNext();
+    }
+
+    /**
+     * Like {@link #prepare}, for a phrase whose clip is never evicted.
+     */
+    public void prepareFixed(String text) {
+        fixedTexts.add(text);
+        var clip = clips.remove(text);
+        if (clip != null) {
+            totalBytes -= clip.bytes;
+            fixedClips.put(text, clip);
+            return;
+        }
+        prepare(text);
+    }
+
+    /**
+     * Plays the cached clip, or speaks the phrase live and caches it for next time.
+     */
+    public void speak(String text) {
+        var clip = fixedClips.get(text);
+        if (clip == null) {
+            clip = clips.get(text);
+        }
+        if (clip != null && clip.ready) {
+            hits++;
+            soundPool.play(clip.soundId, 1, 1, 1, 0, 1);
+            return;
+        }
+        misses++;
+        textToSpeech.speak(text, TextToSpeech.QUEUE_ADD, null, null);
+        prepare(text);
+    }
+
+    private void synthesizeNext() {
+        if (!engineReady || synthesizing != null || pending.isEmpty()) {
+            return;
+        }
+        var text = pending.poll();
+        var clipId = nextClipId++;
+        synthesizing = new Clip(text, new File(directory, clipId + ".wav"));
+        if (textToSpeech.synthesizeToFile(text, null, synthesizing.file, UTTERANCE_PREFIX + clipId) != TextToSpeech.SUCCESS) {
+            Log.w(TAG, "Failed to queue synthesis of \"" + text + "\"");
+            synthesizing = null;
+            mainHandler.post(this::synthesizeNext);
+        }
+    }
+
+    private void onSynthesized(boolean success) {
+        var clip = synthesizing;
+        synthesizing = null;
+        if (clip == null) {
+            return;
+        }
+        if (success) {
+            clip.bytes = clip.file.length();
+            clip.soundId = soundPool.load(clip.file.getPath(), 1);
+            clipsBySoundId.put(clip.soundId, clip);
+            if (fixedTexts.contains(clip.text)) {
+                fixedClips.put(clip.text, clip);
+            } else {
+                clips.put(clip.text, clip);
+                totalBytes += clip.bytes;
+                evict();
+            }
+        } else {
+            Log.w(TAG, "Failed to synthesize \"" + clip.text + "\"");
+            clip.file.delete();
+        }
+        synthesizeNext();
+    }
+
+    private void onLoadComplete(SoundPool pool, int sampleId, int status) {
+        var clip = clipsBySoundId.get(sampleId);
+        if (clip == null) {
+            return;
+        }
+        if (status == 0) {
+            clip.ready = true;
+        } else {
+            Log.w(TAG, "Failed to load speech clip \"" + clip.text + "\", status " + status);
+        }
+    }
+
+    private void evict() {
+        var iterator = clips.values().iterator();
+        while ((clips.size() > MAX_CLIPS || totalBytes > MAX_BYTES) && iterator.hasNext()) {
+            var clip = iterator.next();
+            iterator.remove();
+            clipsBySoundId.remove(clip.soundId);
+            soundPool.unload(clip.soundId);
+            clip.file.delete();
+            totalBytes -= clip.bytes;
+        }
+    }
+
+    private void deleteClipFiles() {
+        var files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    public void release() {
+        pending.clear();
+        soundPool.release();
+        clips.clear();
+        fixedClips.clear();
+        fixedTexts.clear();
+        clipsBySoundId.clear();
+        deleteClipFiles();
+        Log.i(TAG, "Speech cache: " + hits + " clips played, " + misses + " spoken live");
+    }
+}
@@ -0,0 +1,89 @@
+package net.lasertag;
+
+import static net.lasertag.Config.TAG;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the slow parts of a cold start in parallel, off the main thread: reading the preferences into
+ * {@link Config} and creating the {@link SoundManager}, whose sample loads are queued as soon as the
+ * process starts. The activity and the service share the one Config, and wait for what they need
+ * through the readiness callbacks instead of blocking on it. Every step is recorded in the
+ * {@link StartupTrace}.
+ */
+public class Startup {
+
+    private static Startup instance;
+
+    private final Context context;
+    private final StartupTrace trace = new StartupTrace();
+    private final ExecutorService executor = Executors.newCachedThreadPool(task -> new Thread(task, "Startup"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CompletableFuture<Config> config;
+    private CompletableFuture<SoundManager> preloadedSounds;
+
+    public static synchronized Startup get(Context context) {
+        if (instance == null) {
+            instance = new Startup(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private Startup(Context context) {
+        this.context = context;
+        trace.mark("startup");
+        config = CompletableFuture.supplyAsync(() -> traced("config", () -> new Config(context)), executor);
+        preloadedSounds = loadSounds();
+    }
+
+    private CompletableFuture<SoundManager> loadSounds() {
+        var future = CompletableFuture.supplyAsync(() -> traced("sound loads queued",
+                () -> new SoundManager(context, () -> trace.mark("sounds loaded"))), executor);
+        future.exceptionally(e -> {
+            Log.e(TAG, "Failed to create the sound pool", e);
+            return null;
+        });
+        return future;
+    }
+
+    private <T> T traced(String name, Supplier<T> step) {
+        long start = trace.now();
+        var result = step.get();
+        trace.span(name, start);
+        return result;
+    }
+
+    public StartupTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Runs the callback on the main thread once the configuration is loaded.
+     */
+    public void whenConfigReady(Consumer<Config> callback) {
+        config.thenAcceptAsync(callback, mainHandler::post);
+    }
+
+    /**
+     * Hands out the sound manager that started loading with the process, or a freshly loading one
+     * if it was already taken, since its owner releases it. The callback runs on a startup thread.
+     */
+    public synchronized void acquireSoundManager(Consumer<SoundManager> callback) {
+        var sounds = preloadedSounds != null ? preloadedSounds : loadSounds();
+        preloadedSounds = null;
+        sounds.thenAccept(soundManager -> {
+            if (soundManager != null) {
+                callback.accept(soundManager);
+            }
+        });
+    }
+}
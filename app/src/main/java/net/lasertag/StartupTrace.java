@@ -0,0 +1,64 @@
+package net.lasertag;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * Timeline of the startup steps in milliseconds since the process was started, so time-to-first-frame
+ * and time-to-online can be measured and attributed to the steps that delay them. Thread-safe.
+ */
+public class StartupTrace {
+
+    private static final int MAX_ENTRIES = 32;
+
+    private final String[] names = new String[MAX_ENTRIES];
+    private final long[] startMillis = new long[MAX_ENTRIES];
+    private final long[] endMillis = new long[MAX_ENTRIES];
+    private final String[] threads = new String[MAX_ENTRIES];
+    private int count = 0;
+
+    public long now() {
+        return SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+    }
+
+    /**
+     * Records a step that ran from start until now, on the calling thread.
+     */
+    public synchronized void span(String name, long start) {
+        if (count == MAX_ENTRIES) {
+            return;
+        }
+        names[count] = name;
+        startMillis[count] = start;
+        endMillis[count] = now();
+        threads[count] = Thread.currentThread().getName();
+        count++;
+    }
+
+    public void mark(String name) {
+        span(name, now());
+    }
+
+    /**
+     * Records the milestone unless it was recorded before. Returns true the first time.
+     */
+    public synchronized boolean markOnce(String name) {
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) {
+                return false;
+            }
+        }
+        mark(name);
+        return true;
+    }
+
+    public synchronized void dump(StringBuilder out) {
+        for (int i = 0; i < count; i++) {
+            out.append(String.format("%6d ms", endMillis[i]));
+            if (endMillis[i] != startMillis[i]) {
+                out.append(String.format(" (%d ms from %d)", endMillis[i] - startMillis[i], startMillis[i]));
+            }
+            out.append(' ').append(names[i]).append(" [").append(threads[i]).append("]\n");
+        }
+    }
+}
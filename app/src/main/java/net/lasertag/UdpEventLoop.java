@@ -0,0 +1,189 @@
+package net.lasertag;
+
+import static net.lasertag.Config.TAG;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Single-threaded networking core: one non-blocking DatagramChannel bound to one port, a Selector,
+ * and timers that run on the same thread between datagrams.
+ * <p>
+ * Datagrams are received into one reused direct buffer. Everything except {@link #post} and
+ * {@link #shutdown} must be called from the loop thread, which includes the timer tasks and the
+ * datagram handler themselves. Deadlines are on the monotonic elapsedRealtime clock, so a wall
+ * clock adjustment neither stalls nor bunches up the timers.
+ */
+public class UdpEventLoop {
+
+    public interface DatagramHandler {
+        /** The buffer is only valid during the call. */
+        void onDatagram(ByteBuffer data, SocketAddress sender);
+    }
+
+    public static final int RECEIVE_BUFFER_SIZE = 2048;
+    private static final int MAX_TIMERS = 16;
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final DatagramHandler handler;
+    private final ConcurrentLinkedQueue<Runnable> postedTasks = new ConcurrentLinkedQueue<>();
+
+    private final Runnable[] timerTasks = new Runnable[MAX_TIMERS];
+    private final long[] timerDeadlines = new long[MAX_TIMERS];
+
+    private volatile boolean running = true;
+    private Thread thread;
+
+    public UdpEventLoop(int port, DatagramHandler handler) throws IOException {
+        this.handler = handler;
+        selector = Selector.open();
+        channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.setOption(StandardSocketOptions.SO_BROADCAST, true);
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ);
+    }
+
+    public void start() {
+        thread = new Thread(this::run, "UdpEventLoop");
+        thread.start();
+        Log.i(TAG, "Listening on socket: " + channel.socket().getLocalSocketAddress());
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    public boolean inLoopThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Runs the task on the loop thread. Safe to call from any thread.
+     */
+    public void post(Runnable task) {
+        postedTasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Runs the task once after the delay. Calling it again for a task that is already pending
+     * moves its deadline instead of adding a second timer.
+     */
+    public void schedule(Runnable task, long delayMillis) {
+        long deadline = SystemClock.elapsedRealtime() + delayMillis;
+        int free = -1;
+        for (int i = 0; i < MAX_TIMERS; i++) {
+            if (timerTasks[i] == task) {
+                timerDeadlines[i] = deadline;
+                return;
+            }
+            if (timerTasks[i] == null && free < 0) {
+                free = i;
+            }
+        }
+        if (free < 0) {
+            throw new IllegalStateException("Too many timers");
+        }
+        timerTasks[free] = task;
+        timerDeadlines[free] = deadline;
+    }
+
+    public void cancel(Runnable task) {
+        for (int i = 0; i < MAX_TIMERS; i++) {
+            if (timerTasks[i] == task) {
+                timerTasks[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Non-blocking send of the buffer's remaining bytes.
+     */
+    public void send(ByteBuffer data, SocketAddress target) throws IOException {
+        channel.send(data, target);
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(runDueTimers());
+                if (!running) {
+                    break;
+                }
+                runPostedTasks();
+                if (!selector.selectedKeys().isEmpty()) {
+                    selector.selectedKeys().clear();
+                    receiveAll();
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Network loop failed", e);
+        } finally {
+            try {
+                channel.close();
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void receiveAll() throws IOException {
+        while (true) {
+            receiveBuffer.clear();
+            var sender = channel.receive(receiveBuffer);
+            if (sender == null) {
+                return;
+            }
+            receiveBuffer.flip();
+            try {
+                handler.onDatagram(receiveBuffer, sender);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to handle datagram from " + sender, e);
+            }
+        }
+    }
+
+    private void runPostedTasks() {
+        Runnable task;
+        while ((task = postedTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Runs the expired timers and returns how long the selector may sleep until the next one,
+     * 0 meaning no timer is pending.
+     */
+    private long runDueTimers() {
+        long now = SystemClock.elapsedRealtime();
+        for (int i = 0; i < MAX_TIMERS; i++) {
+            var task = timerTasks[i];
+            if (task != null && timerDeadlines[i] <= now) {
+                timerTasks[i] = null;
+                task.run();
+            }
+        }
+        long nextDeadline = Long.MAX_VALUE;
+        for (int i = 0; i < MAX_TIMERS; i++) {
+            if (timerTasks[i] != null) {
+                nextDeadline = Math.min(nextDeadline, timerDeadlines[i]);
+            }
+        }
+        return nextDeadline == Long.MAX_VALUE ? 0 : Math.max(1, nextDeadline - SystemClock.elapsedRealtime());
+    }
+}
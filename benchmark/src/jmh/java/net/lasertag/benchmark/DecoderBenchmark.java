@@ -0,0 +1,93 @@
+package net.lasertag.benchmark;
+
+import net.lasertag.model.StatsDeltaMessage;
+import net.lasertag.model.UdpMessage;
+import net.lasertag.model.UdpMessageDecoder;
+import net.lasertag.model.UdpMessageEncoder;
+import net.lasertag.model.UdpMessages;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding throughput per message type, FULL_STATS and STATS_DELTA per roster size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DecoderBenchmark {
+
+    @Param({"4", "16", "32", "100"})
+    public int rosterSize;
+
+    private final UdpMessageDecoder decoder = new UdpMessageDecoder();
+    private final ByteBuffer ping = ByteBuffer.allocate(64);
+    private final ByteBuffer event = ByteBuffer.allocate(64);
+    private final ByteBuffer timer = ByteBuffer.allocate(64);
+    private final ByteBuffer fullStats = ByteBuffer.allocate(8192);
+    private final ByteBuffer statsDelta = ByteBuffer.allocate(8192);
+
+    @Setup
+    public void setUp() {
+        var players = Rosters.create(rosterSize);
+        UdpMessageEncoder.encodePing(ping, (byte) 1, false);
+        UdpMessageEncoder.encodeEvent(event, UdpMessages.GOT_HIT, (byte) 2, (byte) 80, (byte) 3, (byte) 17);
+        UdpMessageEncoder.encodeTime(timer, (byte) 4, (byte) 59);
+        UdpMessageEncoder.encodeFullStats(fullStats, true, true, players, 1);
+
+        // every player lost some health, a quarter of them scored
+        var delta = new StatsDeltaMessage();
+        delta.setSequence(2);
+        delta.setBaseSequence(1);
+        delta.setGameRunning(true);
+        delta.setTeamPlay(true);
+        delta.setNumChanges(rosterSize);
+        for (int i = 0; i < rosterSize; i++) {
+            delta.getIds()[i] = players[i].getId();
+            delta.getHealths()[i] = (byte) (players[i].getHealth() / 2);
+            delta.getScores()[i] = (byte) (players[i].getScore() + 1);
+            delta.getMasks()[i] = (byte) (StatsDeltaMessage.FIELD_HEALTH | (i % 4 == 0 ? StatsDeltaMessage.FIELD_SCORE : 0));
+        }
+        UdpMessageEncoder.encodeStatsDelta(statsDelta, delta);
+
+        ping.flip();
+        event.flip();
+        timer.flip();
+        fullStats.flip();
+        statsDelta.flip();
+    }
+
+    @Benchmark
+    public UdpMessage decodePing() {
+        return decoder.decode(ping.rewind());
+    }
+
+    @Benchmark
+    public UdpMessage decodeEvent() {
+        return decoder.decode(event.rewind());
+    }
+
+    @Benchmark
+    public UdpMessage decodeTimer() {
+        return decoder.decode(timer.rewind());
+    }
+
+    @Benchmark
+    public UdpMessage decodeFullStats() {
+        return decoder.decode(fullStats.rewind());
+    }
+
+    @Benchmark
+    public UdpMessage decodeStatsDelta() {
+        return decoder.decode(statsDelta.rewind());
+    }
+}
@@ -0,0 +1,23 @@
+package net.lasertag.benchmark;
+
+import net.lasertag.model.Player;
+
+import java.util.Random;
+
+class Rosters {
+
+    static final int TEAMS = 4;
+
+    /**
+     * Deterministic roster with realistic name lengths and a spread of scores, health and teams.
+     */
+    static Player[] create(int size) {
+        var random = new Random(size);
+        var players = new Player[size];
+        for (int i = 0; i < size; i++) {
+            players[i] = new Player((byte) (i + 1), (byte) random.nextInt(101), (byte) random.nextInt(30),
+                    (byte) (1 + i % TEAMS), "Player" + (i + 1));
+        }
+        return players;
+    }
+}
@@ -0,0 +1,62 @@
+package net.lasertag.benchmark;
+
+import net.lasertag.model.Player;
+import net.lasertag.model.Standings;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rank and team score maintenance as run on every stats packet: a full roster in which one player
+ * scored since the last one, followed by the leader queries.
+ * <p>
+ * Every player scores once per round. Scores go up for {@link #ROUNDS} rounds and then back down, so
+ * they stay close to the initial spread and every update is a one point move, never a wrap-around.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StandingsBenchmark {
+
+    private static final int ROUNDS = 16;
+
+    @Param({"4", "16", "32", "100"})
+    public int rosterSize;
+
+    private final Standings standings = new Standings();
+    private Player[] players;
+    private int scorer = 0;
+    private int round = 0;
+
+    @Setup
+    public void setUp() {
+        players = Rosters.create(rosterSize);
+        standings.update(players);
+    }
+
+    @Benchmark
+    public int updateAfterKill() {
+        var player = players[scorer];
+        player.setScore((byte) (player.getScore() + (round < ROUNDS ? 1 : -1)));
+        // 7 is coprime with every roster size, so each round visits every player once
+        scorer = (scorer + 7) % players.length;
+        if (scorer == 0) {
+            round = (round + 1) % (2 * ROUNDS);
+        }
+        standings.update(players);
+        return standings.getLeaderPlayer() + standings.getLeaderTeam();
+    }
+
+    @Benchmark
+    public int leaderQueries() {
+        return standings.getLeaderPlayer() + standings.getLeaderTeam();
+    }
+}
@@ -0,0 +1,100 @@
+package net.lasertag.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Raw datagram capture, as written by the app's packet recorder.
+ * <p>
+ * Little endian. A {@link #HEADER_SIZE} byte header (magic, version, wall clock start in millis) is
+ * followed by records of i64 receive time in System.nanoTime() units, u16 length and the datagram
+ * bytes as received, sequence header included. A zero length marks the end of a capture that was not
+ * closed cleanly, since the rest of the last mapped region is still zero-filled.
+ * <p>
+ * The reader maps the whole file and hands out views of it, so iterating allocates nothing.
+ */
+public class CaptureFile {
+
+    public static final int MAGIC = 0x5043544C; // "LTCP"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_HEADER_SIZE = 10;
+    public static final int MAX_DATAGRAM_SIZE = 0xFFFF;
+
+    private final MappedByteBuffer mapped;
+    private final ByteBuffer data;
+    private final long startMillis;
+    private long timestampNanos;
+
+    public CaptureFile(File file) throws IOException {
+        try (var raf = new RandomAccessFile(file, "r")) {
+            var channel = raf.getChannel();
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (mapped.remaining() < HEADER_SIZE || mapped.getInt() != MAGIC) {
+            throw new IOException("Not a capture file: " + file);
+        }
+        var version = mapped.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported capture version " + version);
+        }
+        mapped.getShort();
+        startMillis = mapped.getLong();
+        data = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        data.limit(data.position());
+    }
+
+    public static void writeHeader(ByteBuffer out, long startMillis) {
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putLong(startMillis);
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Advances to the next record. Returns false at the end of the capture, or at a truncated record.
+     */
+    public boolean next() {
+        if (mapped.remaining() < RECORD_HEADER_SIZE) {
+            return false;
+        }
+        var position = mapped.position();
+        var timestamp = mapped.getLong();
+        var length = mapped.getShort() & 0xFFFF;
+        if (length == 0 || mapped.remaining() < length) {
+            mapped.position(position);
+            return false;
+        }
+        timestampNanos = timestamp;
+        data.limit(mapped.position() + length).position(mapped.position());
+        mapped.position(mapped.position() + length);
+        return true;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * The current record's datagram. The same view is reused by every call to {@link #next}.
+     */
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    /**
+     * Back to the first record.
+     */
+    public void rewind() {
+        mapped.position(HEADER_SIZE);
+        data.limit(HEADER_SIZE).position(HEADER_SIZE);
+    }
+}
@@ -0,0 +1,99 @@
+package net.lasertag.model;
+
+/**
+ * Offset between the local monotonic clock and the server's clock, estimated NTP-style from the
+ * heartbeat: the ping leaves at t0 local time, the server stamps its receive time t1 and send time t2
+ * into the reply, which arrives at t3. Each exchange gives offset ((t1 - t0) + (t2 - t3)) / 2 and
+ * delay (t3 - t0) - (t2 - t1).
+ * <p>
+ * Of the last {@link #WINDOW} samples, the one with the smallest delay is trusted, since queueing on
+ * either leg only ever adds delay and skews that sample's offset by up to half of it. Server times
+ * are microseconds on any epoch, local times are System.nanoTime(). Not thread-safe.
+ */
+public class ClockSync {
+
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final int HISTORY = 8;
+    private static final int WINDOW = 8;
+
+    private final int[] sentSequence = new int[HISTORY];
+    private final long[] sentNanos = new long[HISTORY];
+    private final long[] sampleOffsets = new long[WINDOW];
+    private final long[] sampleDelays = new long[WINDOW];
+    private int sampleCount = 0;
+    private long samples = 0;
+    private volatile long offsetMicros = 0;
+    private volatile long delayMicros = 0;
+    private volatile boolean synced = false;
+
+    public void onPingSent(int sequence, long nanos) {
+        var slot = sequence & (HISTORY - 1);
+        sentSequence[slot] = sequence;
+        sentNanos[slot] = nanos;
+    }
+
+    /**
+     * Returns true if the reply carried server timestamps and matched a ping still on record.
+     */
+    public boolean onPong(int sequence, long serverReceiveMicros, long serverTransmitMicros, long receivedNanos) {
+        if (sequence == UdpMessages.NO_SEQUENCE || serverReceiveMicros == NO_TIME || serverTransmitMicros == NO_TIME) {
+            return false;
+        }
+        var slot = sequence & (HISTORY - 1);
+        if (sentSequence[slot] != sequence || sentNanos[slot] == 0) {
+            return false;
+        }
+        var t0 = sentNanos[slot] / 1000;
+        var t3 = receivedNanos / 1000;
+        sentNanos[slot] = 0;
+        var delay = Math.max(0, (t3 - t0) - (serverTransmitMicros - serverReceiveMicros));
+        var offset = ((serverReceiveMicros - t0) + (serverTransmitMicros - t3)) / 2;
+        var index = (int) (samples++ % WINDOW);
+        sampleOffsets[index] = offset;
+        sampleDelays[index] = delay;
+        sampleCount = Math.min(sampleCount + 1, WINDOW);
+        var best = 0;
+        for (int i = 1; i < sampleCount; i++) {
+            if (sampleDelays[i] < sampleDelays[best]) {
+                best = i;
+            }
+        }
+        delayMicros = sampleDelays[best];
+        offsetMicros = sampleOffsets[best];
+        synced = true;
+        return true;
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * Server clock minus local clock, in microseconds.
+     */
+    public long getOffsetMicros() {
+        return offsetMicros;
+    }
+
+    /**
+     * Round trip of the sample the offset comes from; the offset is off by at most half of it.
+     */
+    public long getDelayMicros() {
+        return delayMicros;
+    }
+
+    /**
+     * A server time as the System.nanoTime() value it corresponds to locally. Safe to call from any thread.
+     */
+    public long toLocalNanos(long serverMicros) {
+        return (serverMicros - offsetMicros) * 1000;
+    }
+
+    public void dump(StringBuilder out) {
+        out.append("clock ").append(synced ? "synced" : "not synced")
+                .append(" offset=").append(offsetMicros).append("us")
+                .append(" delay=").append(delayMicros).append("us")
+                .append(" samples=").append(samples).append('\n');
+    }
+}
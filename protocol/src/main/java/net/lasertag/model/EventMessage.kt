@@ -0,0 +1,151 @@
+package net.lasertag.model
+
+import java.io.Serializable
+
+abstract class UdpMessage(
+    open val type: Byte
+): Serializable {
+    /** System.nanoTime() when the datagram arrived, for latency tracking. */
+    var receivedNanos: Long = 0
+}
+
+data class AckMessage (
+    override val type: Byte
+): UdpMessage(type) {
+    /** Heartbeat sequence echoed back by the server, or NO_SEQUENCE when the reply carries none. */
+    var sequence: Int = UdpMessages.NO_SEQUENCE
+    /** Server clock when the ping arrived and when the reply left, or ClockSync.NO_TIME. */
+    var serverReceiveMicros: Long = ClockSync.NO_TIME
+    var serverTransmitMicros: Long = ClockSync.NO_TIME
+
+    fun copyFrom(other: AckMessage): AckMessage {
+        sequence = other.sequence
+        serverReceiveMicros = other.serverReceiveMicros
+        serverTransmitMicros = other.serverTransmitMicros
+        return this
+    }
+}
+
+data class TimeMessage (
+    override var type: Byte,
+    var minutes: Byte,
+    var seconds: Byte
+): UdpMessage(type) {
+    /** Server clock when the timer runs out, or ClockSync.NO_TIME for servers that do not send it. */
+    var endsAtServerMicros: Long = ClockSync.NO_TIME
+    /** System.nanoTime() when the timer runs out, filled in by the receiver. */
+    var endsAtNanos: Long = 0
+}
+
+data class EventMessage (
+    override var type: Byte,
+    var counterpartPlayerId: Byte,
+    var health: Byte,
+    var score: Byte,
+    var bulletsLeft: Byte
+): UdpMessage(type) {
+    fun copyFrom(other: EventMessage): EventMessage {
+        type = other.type
+        counterpartPlayerId = other.counterpartPlayerId
+        health = other.health
+        score = other.score
+        bulletsLeft = other.bulletsLeft
+        return this
+    }
+}
+
+data class StatsMessage (
+    override var type: Byte,
+    var isGameRunning: Boolean,
+    var isTeamPlay: Boolean,
+    var numPlayers: Byte,
+    var players: Array<Player>
+) : UdpMessage(type) {
+
+    /** Baseline sequence number carried by sequenced FULL_STATS, or NO_SEQUENCE. */
+    var sequence: Int = NO_SEQUENCE
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (javaClass != other?.javaClass) return false
+        other as StatsMessage
+        return type == other.type
+    }
+
+    override fun hashCode(): Int {
+        return type.toInt()
+    }
+
+    /**
+     * Deep copy that reuses this message's own Player instances, so a retained
+     * snapshot is not affected when the decoder recycles the source message.
+     */
+    fun copyFrom(other: StatsMessage): StatsMessage {
+        type = other.type
+        isGameRunning = other.isGameRunning
+        isTeamPlay = other.isTeamPlay
+        numPlayers = other.numPlayers
+        sequence = other.sequence
+        if (players.size != other.players.size) {
+            val old = players
+            players = Array(other.players.size) { i -> old.getOrNull(i) ?: Player(0, 0, 0, 0, "") }
+        }
+        for (i in players.indices) {
+            players[i].copyFrom(other.players[i])
+        }
+        return this
+    }
+
+    companion object {
+        const val NO_SEQUENCE = -1
+    }
+}
+
+/**
+ * Changed player fields against the baseline identified by baseSequence. Entry i is described by
+ * ids[i] and masks[i]; the remaining arrays only hold meaningful values where the mask says so.
+ */
+class StatsDeltaMessage : UdpMessage(UdpMessages.STATS_DELTA) {
+    var sequence: Int = 0
+    var baseSequence: Int = 0
+    var isGameRunning: Boolean = false
+    var isTeamPlay: Boolean = false
+    var numChanges: Int = 0
+    val ids = ByteArray(MAX_CHANGES)
+    val masks = ByteArray(MAX_CHANGES)
+    val healths = ByteArray(MAX_CHANGES)
+    val scores = ByteArray(MAX_CHANGES)
+    val teamIds = ByteArray(MAX_CHANGES)
+    val names = arrayOfNulls<String>(MAX_CHANGES)
+
+    companion object {
+        const val MAX_CHANGES = 256
+        const val FIELD_HEALTH = 1
+        const val FIELD_SCORE = 2
+        const val FIELD_TEAM = 4
+        const val FIELD_NAME = 8
+        const val PLAYER_REMOVED = 0x80
+    }
+}
+
+/**
+ * One piece of a FULL_STATS snapshot too large for a single datagram. Fragments of one snapshot share
+ * the snapshot id; this one carries the numPlayers roster entries starting at firstIndex.
+ */
+class StatsFragmentMessage : UdpMessage(UdpMessages.FULL_STATS_FRAGMENT) {
+    var snapshotId: Int = 0
+    var fragmentIndex: Int = 0
+    var fragmentCount: Int = 0
+    var isGameRunning: Boolean = false
+    var isTeamPlay: Boolean = false
+    var totalPlayers: Int = 0
+    var firstIndex: Int = 0
+    var numPlayers: Int = 0
+    /** Baseline sequence of the whole snapshot, or NO_SEQUENCE. */
+    var sequence: Int = UdpMessages.NO_SEQUENCE
+    val players = Array(MAX_PLAYERS) { Player(0, 0, 0, 0, "") }
+
+    companion object {
+        const val MAX_PLAYERS = 255
+    }
+}
@@ -0,0 +1,249 @@
+package net.lasertag.model;
+
+import static net.lasertag.model.UdpMessages.*;
+
+/**
+ * Client-side copy of the game roster, versioned by the server's stats sequence number.
+ * <p>
+ * A sequenced FULL_STATS sets the baseline, and each STATS_DELTA is applied on top of it only when its
+ * base sequence matches the current one. A delta against any other baseline means something was lost
+ * in between, and the caller should ask the server for a full resync.
+ * <p>
+ * Rosters too large for one datagram come as FULL_STATS_FRAGMENTs. Each fragment is applied as soon
+ * as it arrives, so the roster fills in progressively and a lost fragment only leaves those players
+ * at their previous values. When the last fragment of a snapshot is in, players it did not mention are
+ * removed and its sequence becomes the baseline. A snapshot still incomplete after
+ * {@link #FRAGMENT_TIMEOUT_NANOS} is abandoned, see {@link #expireFragments}.
+ * <p>
+ * A delta or fragment more than {@link #RESTART_DISTANCE} behind cannot be a late one, and means the
+ * server restarted its numbering; the owner also calls {@link #reset} when it switches or loses the
+ * server. Owned by the receiving thread.
+ */
+public class GameStateStore {
+
+    public static final int APPLIED = 0;
+    public static final int STALE = 1;
+    public static final int GAP = 2;
+    /** A fragment was applied, but its snapshot is not complete yet. */
+    public static final int PARTIAL = 3;
+
+    public static final long FRAGMENT_TIMEOUT_NANOS = 500_000_000L;
+    public static final int RESTART_DISTANCE = 16;
+
+    private static final int MAX_PLAYER_ID = 256;
+
+    private final Player[] playersById = new Player[MAX_PLAYER_ID];
+    private final boolean[] present = new boolean[MAX_PLAYER_ID];
+    private final Standings standings = new Standings();
+    private final StatsMessage[] snapshots = new StatsMessage[UdpMessageDecoder.POOL_SIZE];
+    private int snapshotIndex = 0;
+    private int playerCount = 0;
+    private int sequence = StatsMessage.NO_SEQUENCE;
+    private boolean gameRunning = false;
+    private boolean teamPlay = false;
+
+    private final boolean[] fragmentReceived = new boolean[256];
+    private final int[] seenInSnapshot = new int[MAX_PLAYER_ID];
+    private int snapshotStamp = 0;
+    private int snapshotId = StatsMessage.NO_SEQUENCE;
+    private int fragmentsReceived = 0;
+    private long snapshotStartNanos;
+    private boolean assembling = false;
+    private long incompleteSnapshots = 0;
+
+    public void applyFullStats(StatsMessage message) {
+        assembling = false;
+        for (int i = 0; i < MAX_PLAYER_ID; i++) {
+            present[i] = false;
+        }
+        playerCount = 0;
+        for (Player player : message.getPlayers()) {
+            putPlayer(player.getId()).copyFrom(player);
+        }
+        standings.update(message.getPlayers());
+        gameRunning = message.isGameRunning();
+        teamPlay = message.isTeamPlay();
+        sequence = message.getSequence();
+    }
+
+    /**
+     * Returns APPLIED, STALE when the delta is not newer than the current state, or GAP when
+     * the baseline it refers to is not the one held here.
+     */
+    public int applyDelta(StatsDeltaMessage delta) {
+        if (sequence != StatsMessage.NO_SEQUENCE && !isNewerSequence(delta.getSequence(), sequence)
+                && ((sequence - delta.getSequence()) & 0xFFFF) <= RESTART_DISTANCE) {
+            return STALE;
+        }
+        if (sequence == StatsMessage.NO_SEQUENCE || delta.getBaseSequence() != sequence) {
+            return GAP;
+        }
+        for (int i = 0; i < delta.getNumChanges(); i++) {
+            var id = delta.getIds()[i];
+            var mask = delta.getMasks()[i];
+            if ((mask & StatsDeltaMessage.PLAYER_REMOVED) != 0) {
+                removePlayer(id);
+                standings.remove(id);
+                continue;
+            }
+            var player = putPlayer(id);
+            if ((mask & StatsDeltaMessage.FIELD_HEALTH) != 0) {
+                player.setHealth(delta.getHealths()[i]);
+            }
+            if ((mask & StatsDeltaMessage.FIELD_SCORE) != 0) {
+                player.setScore(delta.getScores()[i]);
+            }
+            if ((mask & StatsDeltaMessage.FIELD_TEAM) != 0) {
+                player.setTeamId(delta.getTeamIds()[i]);
+            }
+            if ((mask & StatsDeltaMessage.FIELD_NAME) != 0) {
+                player.setName(delta.getNames()[i]);
+            }
+            standings.put(id, player.getScore(), player.getTeamId());
+        }
+        gameRunning = delta.isGameRunning();
+        teamPlay = delta.isTeamPlay();
+        sequence = delta.getSequence();
+        return APPLIED;
+    }
+
+    /**
+     * Returns APPLIED when the fragment completed its snapshot, PARTIAL when more are due, or STALE for
+     * duplicates and fragments of a snapshot older than the one being assembled.
+     */
+    public int applyFragment(StatsFragmentMessage fragment, long nowNanos) {
+        if (fragment.getFragmentIndex() >= fragment.getFragmentCount()) {
+            return STALE;
+        }
+        if (snapshotId == StatsMessage.NO_SEQUENCE || fragment.getSnapshotId() != snapshotId) {
+            if (snapshotId != StatsMessage.NO_SEQUENCE && !isNewerSequence(fragment.getSnapshotId(), snapshotId)
+                    && ((snapshotId - fragment.getSnapshotId()) & 0xFFFF) <= RESTART_DISTANCE) {
+                return STALE;
+            }
+            if (assembling) {
+                incompleteSnapshots++;
+            }
+            startSnapshot(fragment.getSnapshotId(), nowNanos);
+        } else if (!assembling || fragmentReceived[fragment.getFragmentIndex()]) {
+            return STALE;
+        }
+        fragmentReceived[fragment.getFragmentIndex()] = true;
+        fragmentsReceived++;
+        var players = fragment.getPlayers();
+        for (int i = 0; i < fragment.getNumPlayers(); i++) {
+            var player = putPlayer(players[i].getId()).copyFrom(players[i]);
+            seenInSnapshot[player.getId() & 0xFF] = snapshotStamp;
+            standings.put(player.getId(), player.getScore(), player.getTeamId());
+        }
+        gameRunning = fragment.isGameRunning();
+        teamPlay = fragment.isTeamPlay();
+        if (fragmentsReceived < fragment.getFragmentCount()) {
+            return PARTIAL;
+        }
+        assembling = false;
+        for (int slot = 0; slot < MAX_PLAYER_ID; slot++) {
+            if (present[slot] && seenInSnapshot[slot] != snapshotStamp) {
+                removePlayer((byte) slot);
+                standings.remove((byte) slot);
+            }
+        }
+        sequence = fragment.getSequence();
+        return APPLIED;
+    }
+
+    private void startSnapshot(int id, long nowNanos) {
+        snapshotId = id;
+        snapshotStamp++;
+        snapshotStartNanos = nowNanos;
+        fragmentsReceived = 0;
+        assembling = true;
+        for (int i = 0; i < fragmentReceived.length; i++) {
+            fragmentReceived[i] = false;
+        }
+    }
+
+    /**
+     * Gives up on a fragmented snapshot that has been incomplete for too long. Returns true when one was
+     * abandoned; the roster keeps what arrived, but it is a mix of two snapshots, so the baseline is
+     * dropped, deltas are refused as gaps, and a resync is due.
+     */
+    public boolean expireFragments(long nowNanos) {
+        if (assembling && nowNanos - snapshotStartNanos > FRAGMENT_TIMEOUT_NANOS) {
+            incompleteSnapshots++;
+            reset();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets the baseline and the snapshot being assembled, for when the server changed or restarted
+     * its numbering. The roster stays as it is until the next full snapshot.
+     */
+    public void reset() {
+        assembling = false;
+        snapshotId = StatsMessage.NO_SEQUENCE;
+        sequence = StatsMessage.NO_SEQUENCE;
+    }
+
+    /**
+     * Fragmented snapshots that were abandoned or superseded before all their fragments arrived.
+     */
+    public long getIncompleteSnapshots() {
+        return incompleteSnapshots;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public Standings getStandings() {
+        return standings;
+    }
+
+    /**
+     * Current state as a regular FULL_STATS message ordered by rank. Snapshots are recycled
+     * the same way as decoded messages, see {@link UdpMessageDecoder}.
+     */
+    public StatsMessage snapshot() {
+        var message = snapshots[snapshotIndex];
+        if (message == null) {
+            message = new StatsMessage(FULL_STATS, false, false, (byte) 0, new Player[0]);
+            snapshots[snapshotIndex] = message;
+        }
+        snapshotIndex = (snapshotIndex + 1) % snapshots.length;
+
+        var players = UdpMessageDecoder.ensureRoster(message.getPlayers(), playerCount);
+        for (int rank = 0; rank < playerCount; rank++) {
+            players[rank].copyFrom(playersById[standings.getIdAt(rank) & 0xFF]);
+        }
+        message.setGameRunning(gameRunning);
+        message.setTeamPlay(teamPlay);
+        message.setNumPlayers((byte) playerCount);
+        message.setPlayers(players);
+        message.setSequence(sequence);
+        return message;
+    }
+
+    private Player putPlayer(byte id) {
+        var slot = id & 0xFF;
+        var player = playersById[slot];
+        if (player == null) {
+            player = new Player(id, (byte) 0, (byte) 0, (byte) 0, "");
+            playersById[slot] = player;
+        }
+        if (!present[slot]) {
+            present[slot] = true;
+            playerCount++;
+        }
+        return player;
+    }
+
+    private void removePlayer(byte id) {
+        var slot = id & 0xFF;
+        if (present[slot]) {
+            present[slot] = false;
+            playerCount--;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package net.lasertag.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append-only log of the events one player saw during one match, as written by the app's match
+ * recorder, and an indexed reader for post-game queries.
+ * <p>
+ * Little endian. A {@link #HEADER_SIZE} byte header (magic, version, flags, player id, wall clock
+ * start in millis, record count, duration in millis) is followed by fixed size records of i32 millis
+ * since the match started, then the event's type, counterpart player id, health, score and bullets
+ * left. Record count and duration are filled in when the match is closed; a log that was not closed
+ * cleanly has a zero count and is read up to its last complete record.
+ * <p>
+ * Opening a log maps the file and indexes it in two passes: records are grouped by type, counted
+ * per opponent and the score changes are picked out, so every query afterwards is an array lookup.
+ */
+public class MatchLog {
+
+    public static final int MAGIC = 0x4C4D544C; // "LTML"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    public static final int RECORD_SIZE = 9;
+    /** Shots, reloads and empty-magazine clicks were dropped, everything else is intact. */
+    public static final int FLAG_COMPACTED = 1;
+
+    private static final int FLAGS_OFFSET = 6;
+    private static final int RECORD_COUNT_OFFSET = 16;
+    private static final int DURATION_OFFSET = 20;
+    private static final int MAX_ID = 256;
+
+    private final MappedByteBuffer mapped;
+    private final int flags;
+    private final byte playerId;
+    private final long startMillis;
+    private final int recordCount;
+    private final int durationMillis;
+
+    private final int[][] recordsByType = new int[MAX_ID][];
+    private final int[] kills = new int[MAX_ID];
+    private final int[] deaths = new int[MAX_ID];
+    private final int[] hitsGiven = new int[MAX_ID];
+    private final int[] hitsTaken = new int[MAX_ID];
+    private final int[] scoreChanges;
+    private int scoreChangeCount = 0;
+
+    public MatchLog(File file) throws IOException {
+        try (var raf = new RandomAccessFile(file, "r")) {
+            var channel = raf.getChannel();
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (mapped.limit() < HEADER_SIZE || mapped.getInt(0) != MAGIC) {
+            throw new IOException("Not a match log: " + file);
+        }
+        var version = mapped.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported match log version " + version);
+        }
+        flags = mapped.get(FLAGS_OFFSET);
+        playerId = mapped.get(FLAGS_OFFSET + 1);
+        startMillis = mapped.getLong(8);
+        var complete = (mapped.limit() - HEADER_SIZE) / RECORD_SIZE;
+        var declared = mapped.getInt(RECORD_COUNT_OFFSET);
+        recordCount = declared > 0 ? Math.min(declared, complete) : complete;
+        var duration = mapped.getInt(DURATION_OFFSET);
+        durationMillis = duration > 0 || recordCount == 0 ? duration : getTimeMillis(recordCount - 1);
+        scoreChanges = new int[recordCount];
+        buildIndex();
+    }
+
+    private void buildIndex() {
+        var countByType = new int[MAX_ID];
+        var previousScore = Integer.MIN_VALUE;
+        for (int record = 0; record < recordCount; record++) {
+            var type = getType(record) & 0xFF;
+            var opponent = getCounterpart(record) & 0xFF;
+            countByType[type]++;
+            switch ((byte) type) {
+                case UdpMessages.YOU_SCORED -> kills[opponent]++;
+                case UdpMessages.YOU_KILLED -> deaths[opponent]++;
+                case UdpMessages.YOU_HIT_SOMEONE -> hitsGiven[opponent]++;
+                case UdpMessages.GOT_HIT -> hitsTaken[opponent]++;
+            }
+            var score = getScore(record);
+            if (score != previousScore) {
+                scoreChanges[scoreChangeCount++] = record;
+                previousScore = score;
+            }
+        }
+        for (int type = 0; type < MAX_ID; type++) {
+            if (countByType[type] > 0) {
+                recordsByType[type] = new int[countByType[type]];
+                countByType[type] = 0;
+            }
+        }
+        for (int record = 0; record < recordCount; record++) {
+            var type = getType(record) & 0xFF;
+            recordsByType[type][countByType[type]++] = record;
+        }
+    }
+
+    public static void writeHeader(ByteBuffer out, long startMillis, byte playerId, int flags) {
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putShort(VERSION).put((byte) flags).put(playerId).putLong(startMillis).putInt(0).putInt(0);
+    }
+
+    /**
+     * Fills in the record count and duration of a log whose header is at the start of the buffer.
+     */
+    public static void writeTrailer(ByteBuffer header, int recordCount, int durationMillis) {
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(RECORD_COUNT_OFFSET, recordCount).putInt(DURATION_OFFSET, durationMillis);
+    }
+
+    public static void putRecord(ByteBuffer out, int timeMillis, byte type, byte counterpart, byte health,
+                                 byte score, byte bulletsLeft) {
+        out.putInt(timeMillis).put(type).put(counterpart).put(health).put(score).put(bulletsLeft);
+    }
+
+    /**
+     * Reads only the header flags, to decide on retention without indexing the whole log.
+     */
+    public static int readFlags(File file) throws IOException {
+        try (var raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < HEADER_SIZE || Integer.reverseBytes(raf.readInt()) != MAGIC) {
+                throw new IOException("Not a match log: " + file);
+            }
+            raf.seek(FLAGS_OFFSET);
+            return raf.readByte();
+        }
+    }
+
+    /**
+     * Writes a compacted copy of this log, without the records that only matter for a shot by shot replay.
+     * The buffer must have room for {@link #HEADER_SIZE} plus {@link #RECORD_SIZE} per record.
+     */
+    public void compactTo(ByteBuffer out) {
+        var start = out.position();
+        writeHeader(out, startMillis, playerId, flags | FLAG_COMPACTED);
+        int kept = 0;
+        for (int record = 0; record < recordCount; record++) {
+            var type = getType(record);
+            if (type == UdpMessages.GUN_SHOT || type == UdpMessages.GUN_RELOAD || type == UdpMessages.GUN_NO_BULLETS) {
+                continue;
+            }
+            var offset = HEADER_SIZE + record * RECORD_SIZE;
+            for (int i = 0; i < RECORD_SIZE; i++) {
+                out.put(mapped.get(offset + i));
+            }
+            kept++;
+        }
+        out.putInt(start + RECORD_COUNT_OFFSET, kept).putInt(start + DURATION_OFFSET, durationMillis);
+    }
+
+    public boolean isCompacted() {
+        return (flags & FLAG_COMPACTED) != 0;
+    }
+
+    public byte getPlayerId() {
+        return playerId;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public int getDurationMillis() {
+        return durationMillis;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public int getTimeMillis(int record) {
+        return mapped.getInt(HEADER_SIZE + record * RECORD_SIZE);
+    }
+
+    public byte getType(int record) {
+        return mapped.get(HEADER_SIZE + record * RECORD_SIZE + 4);
+    }
+
+    public byte getCounterpart(int record) {
+        return mapped.get(HEADER_SIZE + record * RECORD_SIZE + 5);
+    }
+
+    public byte getHealth(int record) {
+        return mapped.get(HEADER_SIZE + record * RECORD_SIZE + 6);
+    }
+
+    public byte getScore(int record) {
+        return mapped.get(HEADER_SIZE + record * RECORD_SIZE + 7);
+    }
+
+    public byte getBulletsLeft(int record) {
+        return mapped.get(HEADER_SIZE + record * RECORD_SIZE + 8);
+    }
+
+    /**
+     * Number of records of the given message type, e.g. GOT_HIT for the hit timeline.
+     */
+    public int getCount(byte type) {
+        var records = recordsByType[type & 0xFF];
+        return records == null ? 0 : records.length;
+    }
+
+    /**
+     * Record number of the i-th record of the given type, in time order.
+     */
+    public int getRecord(byte type, int i) {
+        return recordsByType[type & 0xFF][i];
+    }
+
+    /**
+     * Times this player killed the opponent.
+     */
+    public int getKills(byte opponentId) {
+        return kills[opponentId & 0xFF];
+    }
+
+    /**
+     * Times the opponent killed this player.
+     */
+    public int getDeaths(byte opponentId) {
+        return deaths[opponentId & 0xFF];
+    }
+
+    public int getHitsGiven(byte opponentId) {
+        return hitsGiven[opponentId & 0xFF];
+    }
+
+    public int getHitsTaken(byte opponentId) {
+        return hitsTaken[opponentId & 0xFF];
+    }
+
+    /**
+     * Number of points in the score progression, the first record and every record whose score differs
+     * from the one before.
+     */
+    public int getScoreChangeCount() {
+        return scoreChangeCount;
+    }
+
+    public int getScoreChange(int i) {
+        return scoreChanges[i];
+    }
+
+    public void dump(StringBuilder out) {
+        out.append("match ").append(startMillis).append(isCompacted() ? " compacted" : "")
+                .append(": ").append(recordCount).append(" records, ").append(durationMillis / 1000).append("s, score ")
+                .append(scoreChangeCount > 0 ? getScore(scoreChanges[scoreChangeCount - 1]) : 0).append('\n');
+        for (int opponent = 0; opponent < MAX_ID; opponent++) {
+            if (kills[opponent] + deaths[opponent] + hitsGiven[opponent] + hitsTaken[opponent] > 0) {
+                out.append("  vs ").append(opponent)
+                        .append(" kills=").append(kills[opponent])
+                        .append(" deaths=").append(deaths[opponent])
+                        .append(" hits=").append(hitsGiven[opponent])
+                        .append(" hitBy=").append(hitsTaken[opponent]).append('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package net.lasertag.model;
+
+/**
+ * Handlers indexed by message type byte, so routing a message is one array lookup and adding a
+ * message type means registering one handler. Messages without a handler are counted and ignored.
+ * Not thread-safe, meant to be owned by the thread that handles the messages.
+ */
+public class MessageDispatcher {
+
+    public interface Handler<T extends UdpMessage> {
+        void handle(T message);
+    }
+
+    private static final int TYPES = 256;
+
+    private final Handler<?>[] handlers = new Handler<?>[TYPES];
+    private long unhandledCount = 0;
+
+    /**
+     * The handler's message class must be the one the decoder produces for this type.
+     */
+    public <T extends UdpMessage> MessageDispatcher on(byte type, Handler<T> handler) {
+        handlers[type & 0xFF] = handler;
+        return this;
+    }
+
+    /**
+     * Registers the same handler for several types.
+     */
+    public <T extends UdpMessage> MessageDispatcher on(byte[] types, Handler<T> handler) {
+        for (byte type : types) {
+            on(type, handler);
+        }
+        return this;
+    }
+
+    /**
+     * Returns false when no handler is registered for the message's type.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean dispatch(UdpMessage message) {
+        var handler = (Handler<UdpMessage>) handlers[message.getType() & 0xFF];
+        if (handler == null) {
+            unhandledCount++;
+            return false;
+        }
+        handler.handle(message);
+        return true;
+    }
+
+    public long getUnhandledCount() {
+        return unhandledCount;
+    }
+}
@@ -0,0 +1,172 @@
+package net.lasertag.model;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands decoded messages from the receiving thread to one consumer thread, coalescing state and never
+ * losing an event.
+ * <p>
+ * Stats and timer messages only matter as their latest value, so each kind has a single slot that a
+ * newer message replaces as soon as it is offered; they never take room from events. Events are copied
+ * into a single-producer/single-consumer ring of {@link #CAPACITY} preallocated messages, so they stay
+ * valid however many more the decoder recycles its pool for in the meantime. When the consumer is
+ * further behind than that, events spill to an overflow list as fresh copies. The overflow is the
+ * only place that allocates, and only while the consumer is stalled.
+ * <p>
+ * Events are delivered in the order they were offered, and a stats or timer message after the events
+ * that were offered before it. A delivered event stays valid until {@link #CAPACITY} more have been
+ * offered; stats and timer messages are handed on as offered, see {@link UdpMessageDecoder}.
+ */
+public class MessageQueue {
+
+    public interface Consumer {
+        void accept(UdpMessage message);
+    }
+
+    public static final int CAPACITY = 16;
+    private static final int MASK = CAPACITY - 1;
+
+    private final UdpMessage[] slots = new UdpMessage[CAPACITY];
+    private final EventMessage[] eventSlots = new EventMessage[CAPACITY];
+    private final AckMessage[] ackSlots = new AckMessage[CAPACITY];
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final ConcurrentLinkedQueue<UdpMessage> overflow = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<UdpMessage> latestStats = new AtomicReference<>();
+    private final AtomicReference<UdpMessage> latestTimer = new AtomicReference<>();
+    private volatile long offeredEvents = 0;
+    private volatile long statsPosition = 0;
+    private volatile long timerPosition = 0;
+    private long deliveredEvents = 0;
+    private volatile long overflowCount = 0;
+    private volatile long collapsedStatsCount = 0;
+    private volatile long collapsedTimerCount = 0;
+
+    public MessageQueue() {
+        for (int i = 0; i < CAPACITY; i++) {
+            eventSlots[i] = new EventMessage((byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0);
+            ackSlots[i] = new AckMessage(UdpMessages.PING);
+        }
+    }
+
+    /**
+     * Producer thread only.
+     */
+    public void offer(UdpMessage message) {
+        if (message instanceof StatsMessage) {
+            statsPosition = offeredEvents;
+            if (latestStats.getAndSet(message) != null) {
+                collapsedStatsCount++;
+            }
+            return;
+        }
+        if (message instanceof TimeMessage) {
+            timerPosition = offeredEvents;
+            if (latestTimer.getAndSet(message) != null) {
+                collapsedTimerCount++;
+            }
+            return;
+        }
+        // once events spill, later ones follow them into the overflow until it is drained, to keep the order
+        long t = tail.get();
+        if (!overflow.isEmpty() || t - head.get() >= CAPACITY) {
+            overflow.add(copyOf(message));
+            overflowCount++;
+        } else {
+            int index = (int) (t & MASK);
+            slots[index] = copyInto(index, message);
+            tail.lazySet(t + 1);
+        }
+        offeredEvents++;
+    }
+
+    /**
+     * Consumer thread only. Delivers everything offered so far.
+     */
+    public void drainTo(Consumer consumer) {
+        var stats = latestStats.getAndSet(null);
+        var statsAt = statsPosition;
+        var timer = latestTimer.getAndSet(null);
+        var timerAt = timerPosition;
+        while (true) {
+            if (stats != null && statsAt <= deliveredEvents && (timer == null || statsAt <= timerAt)) {
+                consumer.accept(stats);
+                stats = null;
+                continue;
+            }
+            if (timer != null && timerAt <= deliveredEvents) {
+                consumer.accept(timer);
+                timer = null;
+                continue;
+            }
+            // a ring slot is handed back to the producer only once its event has been handled
+            long h = head.get();
+            if (h < tail.get()) {
+                int index = (int) (h & MASK);
+                var event = slots[index];
+                slots[index] = null;
+                deliveredEvents++;
+                consumer.accept(event);
+                head.lazySet(h + 1);
+                continue;
+            }
+            var event = overflow.poll();
+            if (event == null) {
+                break;
+            }
+            deliveredEvents++;
+            consumer.accept(event);
+        }
+        if (stats != null) {
+            consumer.accept(stats);
+        }
+        if (timer != null) {
+            consumer.accept(timer);
+        }
+    }
+
+    private UdpMessage copyInto(int index, UdpMessage message) {
+        if (message instanceof EventMessage) {
+            eventSlots[index].copyFrom((EventMessage) message).setReceivedNanos(message.getReceivedNanos());
+            return eventSlots[index];
+        }
+        if (message instanceof AckMessage) {
+            ackSlots[index].copyFrom((AckMessage) message).setReceivedNanos(message.getReceivedNanos());
+            return ackSlots[index];
+        }
+        return message;
+    }
+
+    private static UdpMessage copyOf(UdpMessage message) {
+        UdpMessage copy;
+        if (message instanceof EventMessage) {
+            copy = new EventMessage(message.getType(), (byte) 0, (byte) 0, (byte) 0, (byte) 0).copyFrom((EventMessage) message);
+        } else if (message instanceof AckMessage) {
+            copy = new AckMessage(message.getType()).copyFrom((AckMessage) message);
+        } else {
+            return message;
+        }
+        copy.setReceivedNanos(message.getReceivedNanos());
+        return copy;
+    }
+
+    /**
+     * Events that did not fit the ring and were copied to the overflow, a measure of consumer stalls.
+     */
+    public long getOverflowCount() {
+        return overflowCount;
+    }
+
+    /**
+     * Stats messages replaced by a newer one before the consumer got to them.
+     */
+    public long getCollapsedStatsCount() {
+        return collapsedStatsCount;
+    }
+
+    public long getCollapsedTimerCount() {
+        return collapsedTimerCount;
+    }
+}
@@ -0,0 +1,101 @@
+package net.lasertag.model;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decoders indexed by message type byte, with message and byte counters per type.
+ * <p>
+ * Decoding a datagram is one array lookup on its type. A type nobody registered, or a datagram too
+ * short for its type, yields null and is counted as such instead of being decoded as something else;
+ * only datagrams that decoded count towards their type. The counters are plain arrays, so counting
+ * allocates nothing. Not thread-safe, owned by the decoding thread; the counters may be read from
+ * elsewhere for diagnostics.
+ */
+public class MessageRegistry {
+
+    public interface Decoder {
+        /**
+         * Decodes the message body, the buffer positioned right after the type byte.
+         */
+        UdpMessage decode(byte type, ByteBuffer buffer);
+    }
+
+    private static final int TYPES = 256;
+
+    private final Decoder[] decoders = new Decoder[TYPES];
+    private final long[] messageCounts = new long[TYPES];
+    private final long[] byteCounts = new long[TYPES];
+    private long unknownCount = 0;
+    private long malformedCount = 0;
+
+    public void register(byte type, Decoder decoder) {
+        decoders[type & 0xFF] = decoder;
+    }
+
+    public boolean isRegistered(byte type) {
+        return decoders[type & 0xFF] != null;
+    }
+
+    /**
+     * Decodes the datagram between the buffer's position and limit, or returns null when its type is
+     * unknown or it is truncated.
+     */
+    public UdpMessage decode(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            malformedCount++;
+            return null;
+        }
+        var length = buffer.remaining();
+        var type = buffer.get();
+        var slot = type & 0xFF;
+        var decoder = decoders[slot];
+        if (decoder == null) {
+            unknownCount++;
+            return null;
+        }
+        UdpMessage message;
+        try {
+            message = decoder.decode(type, buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            malformedCount++;
+            return null;
+        }
+        messageCounts[slot]++;
+        byteCounts[slot] += length;
+        return message;
+    }
+
+    public long getMessageCount(byte type) {
+        return messageCounts[type & 0xFF];
+    }
+
+    public long getByteCount(byte type) {
+        return byteCounts[type & 0xFF];
+    }
+
+    /**
+     * Datagrams of a type without a decoder.
+     */
+    public long getUnknownCount() {
+        return unknownCount;
+    }
+
+    /**
+     * Datagrams that were empty or ended before their message did.
+     */
+    public long getMalformedCount() {
+        return malformedCount;
+    }
+
+    public void dump(StringBuilder out) {
+        for (int type = 0; type < TYPES; type++) {
+            if (messageCounts[type] > 0) {
+                out.append("type ").append(type)
+                        .append(" messages=").append(messageCounts[type])
+                        .append(" bytes=").append(byteCounts[type]).append('\n');
+            }
+        }
+        out.append("unknown=").append(unknownCount).append(" malformed=").append(malformedCount).append('\n');
+    }
+}
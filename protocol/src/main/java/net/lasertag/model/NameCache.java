@@ -0,0 +1,79 @@
+package net.lasertag.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns player names by their raw UTF-8 bytes, so decoding a name that was seen before is a hash
+ * and a byte comparison instead of a new String.
+ * <p>
+ * Open addressing over a fixed table. Names barely change within a match, so when the table fills up
+ * it is simply cleared and refilled from the following packets. Not thread-safe.
+ */
+public class NameCache {
+
+    private static final int CAPACITY = 512;
+    private static final int MASK = CAPACITY - 1;
+    private static final int MAX_ENTRIES = CAPACITY * 3 / 4;
+
+    private final byte[][] keys = new byte[CAPACITY][];
+    private final int[] hashes = new int[CAPACITY];
+    private final String[] names = new String[CAPACITY];
+    private int size = 0;
+    private long misses = 0;
+
+    public String intern(byte[] bytes, int offset, int length) {
+        int hash = hash(bytes, offset, length);
+        int slot = hash & MASK;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && sameBytes(keys[slot], bytes, offset, length)) {
+                return names[slot];
+            }
+            slot = (slot + 1) & MASK;
+        }
+        misses++;
+        if (size == MAX_ENTRIES) {
+            clear();
+            slot = hash & MASK;
+        }
+        var name = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        keys[slot] = Arrays.copyOfRange(bytes, offset, offset + length);
+        hashes[slot] = hash;
+        names[slot] = name;
+        size++;
+        return name;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(names, null);
+        size = 0;
+    }
+
+    /**
+     * Names decoded because they were not cached, a measure of string allocation.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = offset; i < offset + length; i++) {
+            hash = (hash ^ bytes[i]) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean sameBytes(byte[] key, byte[] bytes, int offset, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
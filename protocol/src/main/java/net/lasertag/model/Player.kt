@@ -0,0 +1,20 @@
+package net.lasertag.model
+
+import java.io.Serializable
+
+data class Player(
+    var id: Byte,
+    var health: Byte,
+    var score: Byte,
+    var teamId: Byte,
+    var name: String
+) : Serializable {
+    fun copyFrom(other: Player): Player {
+        id = other.id
+        health = other.health
+        score = other.score
+        teamId = other.teamId
+        name = other.name
+        return this
+    }
+}
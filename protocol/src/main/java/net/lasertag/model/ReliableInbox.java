@@ -0,0 +1,114 @@
+package net.lasertag.model;
+
+/**
+ * Receiving end of the reliable channel. The server prefixes messages it wants acknowledged with
+ * {@link UdpMessages#RELIABLE_HEADER} and a u16 message id, and resends them until an ack arrives.
+ * <p>
+ * The inbox remembers the newest id and which of the {@link #ACK_WINDOW} ids before it arrived, and
+ * that pair is what the heartbeat carries back as the ack, so one ping acknowledges everything recent
+ * and a lost ping is repaired by the next one. Resent copies of a message that already arrived are
+ * rejected.
+ * <p>
+ * The server never has more than the window in flight, so it cannot resend an id further behind than
+ * that. Such an id means the server started numbering over, after a restart, and begins a new session.
+ * The owner also calls {@link #reset} when it switches or loses the server. Written by the receiving
+ * thread only; counters may be read from any thread.
+ */
+public class ReliableInbox {
+
+    public static final int ACK_WINDOW = 32;
+
+    private int latest = UdpMessages.NO_SEQUENCE;
+    private long ackBits = 0;
+    private long accepted = 0;
+    private long duplicates = 0;
+    private long sessions = 0;
+
+    /**
+     * Returns true the first time the message id is seen.
+     */
+    public boolean accept(int id) {
+        if (latest == UdpMessages.NO_SEQUENCE) {
+            startSession(id);
+            return true;
+        }
+        int ahead = (id - latest) & 0xFFFF;
+        if (ahead != 0 && ahead < 0x8000) {
+            ackBits = ahead > ACK_WINDOW ? 0 : ((ackBits << ahead) | (1L << (ahead - 1))) & 0xFFFFFFFFL;
+            latest = id;
+            accepted++;
+            return true;
+        }
+        int behind = (latest - id) & 0xFFFF;
+        if (behind > ACK_WINDOW) {
+            startSession(id);
+            return true;
+        }
+        long bit = behind == 0 ? 0 : 1L << (behind - 1);
+        if (bit == 0 || (ackBits & bit) != 0) {
+            duplicates++;
+            return false;
+        }
+        ackBits |= bit;
+        accepted++;
+        return true;
+    }
+
+    private void startSession(int id) {
+        latest = id;
+        ackBits = 0;
+        accepted++;
+        sessions++;
+    }
+
+    /**
+     * Forgets every id received, for when the server changed or may have restarted. The counters are kept.
+     */
+    public void reset() {
+        latest = UdpMessages.NO_SEQUENCE;
+        ackBits = 0;
+    }
+
+    public boolean hasReceived() {
+        return latest != UdpMessages.NO_SEQUENCE;
+    }
+
+    /**
+     * Newest message id received.
+     */
+    public int getLatest() {
+        return latest;
+    }
+
+    /**
+     * Bit n set when message id latest - 1 - n was received.
+     */
+    public long getAckBits() {
+        return ackBits;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * Resent copies that were not delivered again.
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Times the numbering started over, the first message included.
+     */
+    public long getSessions() {
+        return sessions;
+    }
+
+    public void dump(StringBuilder out) {
+        out.append("reliable accepted=").append(accepted)
+                .append(" duplicates=").append(duplicates)
+                .append(" sessions=").append(sessions)
+                .append(" latest=").append(latest).append('\n');
+    }
+}
@@ -0,0 +1,97 @@
+package net.lasertag.model;
+
+import static net.lasertag.model.UdpMessages.NO_SEQUENCE;
+
+/**
+ * Round-trip time of the heartbeat, smoothed the way TCP does it: srtt moves 1/8 and rttvar 1/4 of
+ * the way towards each new sample, and the retransmission-style timeout is srtt + 4 * rttvar.
+ * <p>
+ * Replies that echo the ping sequence are matched to the ping they answer. Replies without one are
+ * only sampled when a single ping is outstanding, since otherwise there is no telling which ping
+ * they belong to. Not thread-safe.
+ */
+public class RttEstimator {
+
+    private static final int HISTORY = 8;
+    private static final long MIN_VARIANCE_MICROS = 1000;
+
+    private final int[] sentSequence = new int[HISTORY];
+    private final long[] sentNanos = new long[HISTORY];
+    private int outstanding = 0;
+    private int lastSequence = NO_SEQUENCE;
+
+    private long srttMicros = 0;
+    private long rttvarMicros = 0;
+    private long lastSampleMicros = 0;
+    private long samples = 0;
+
+    public void onPingSent(int sequence, long nanos) {
+        var slot = sequence & (HISTORY - 1);
+        sentSequence[slot] = sequence;
+        sentNanos[slot] = nanos;
+        lastSequence = sequence;
+        outstanding++;
+    }
+
+    /**
+     * Returns true if the reply produced an RTT sample.
+     */
+    public boolean onPong(int sequence, long nanos) {
+        var pending = outstanding;
+        outstanding = 0;
+        if (sequence == NO_SEQUENCE) {
+            if (pending != 1) {
+                return false;
+            }
+            sequence = lastSequence;
+        }
+        var slot = sequence & (HISTORY - 1);
+        if (sentSequence[slot] != sequence || sentNanos[slot] == 0) {
+            return false;
+        }
+        addSample((nanos - sentNanos[slot]) / 1000);
+        sentNanos[slot] = 0;
+        return true;
+    }
+
+    private void addSample(long micros) {
+        lastSampleMicros = micros;
+        if (samples++ == 0) {
+            srttMicros = micros;
+            rttvarMicros = micros / 2;
+            return;
+        }
+        rttvarMicros += (Math.abs(srttMicros - micros) - rttvarMicros) / 4;
+        srttMicros += (micros - srttMicros) / 8;
+    }
+
+    public boolean hasSamples() {
+        return samples > 0;
+    }
+
+    public long getSrttMicros() {
+        return srttMicros;
+    }
+
+    public long getRttvarMicros() {
+        return rttvarMicros;
+    }
+
+    public long getLastSampleMicros() {
+        return lastSampleMicros;
+    }
+
+    /**
+     * How long a reply may reasonably take, srtt + 4 * rttvar, or 0 before the first sample.
+     */
+    public long getTimeoutMicros() {
+        return samples == 0 ? 0 : srttMicros + 4 * Math.max(MIN_VARIANCE_MICROS, rttvarMicros);
+    }
+
+    public void dump(StringBuilder out) {
+        out.append("rtt srtt=").append(srttMicros / 1000.0).append("ms")
+                .append(" rttvar=").append(rttvarMicros / 1000.0).append("ms")
+                .append(" last=").append(lastSampleMicros / 1000.0).append("ms")
+                .append(" samples=").append(samples).append('\n');
+    }
+}
@@ -0,0 +1,151 @@
+package net.lasertag.model;
+
+import static net.lasertag.model.UdpMessages.*;
+
+/**
+ * Per message type duplicate and out-of-order rejection for sequenced datagrams, with loss accounting.
+ * <p>
+ * The server numbers each message type separately with a u16 sequence, so every gap can be attributed
+ * to the type that lost it. A gap counts as lost until the missing packet shows up late, at which point
+ * it is counted as reordered instead. State messages (stats and timer) older than the newest one are
+ * dropped as stale; late events are still delivered, duplicates never are.
+ * <p>
+ * A restarted server numbers from scratch, which looks like everything falling far behind. The owner
+ * calls {@link #reset} whenever it switches or loses the server; a restart it does not notice is
+ * detected once {@link #RESTART_RUN} consecutive packets of a type count up from below the window, or
+ * one lands more than {@link #RESET_DISTANCE} behind.
+ * <p>
+ * Written by the receiving thread only; counters may be read from any thread.
+ */
+public class SequenceTracker {
+
+    private static final int TYPES = 256;
+    private static final int WINDOW = 64;
+    /** A packet this far behind means the server restarted its numbering. */
+    private static final int RESET_DISTANCE = 1024;
+    /** Consecutive packets counting up from below the window that mean the server restarted its numbering. */
+    private static final int RESTART_RUN = 3;
+
+    private final int[] highest = new int[TYPES];
+    private final long[] window = new long[TYPES];
+    private final boolean[] started = new boolean[TYPES];
+    private final int[] restartCandidate = new int[TYPES];
+    private final int[] restartRun = new int[TYPES];
+
+    private final long[] received = new long[TYPES];
+    private final long[] duplicates = new long[TYPES];
+    private final long[] reordered = new long[TYPES];
+    private final long[] stale = new long[TYPES];
+    private final long[] lost = new long[TYPES];
+
+    /**
+     * Returns true if the datagram should be processed.
+     */
+    public boolean accept(byte type, int sequence) {
+        int t = type & 0xFF;
+        received[t]++;
+        if (!started[t]) {
+            start(t, sequence);
+            return true;
+        }
+        int ahead = (sequence - highest[t]) & 0xFFFF;
+        if (ahead != 0 && ahead < 0x8000) {
+            restartRun[t] = 0;
+            lost[t] += ahead - 1;
+            window[t] = ahead >= WINDOW ? 1 : (window[t] << ahead) | 1;
+            highest[t] = sequence;
+            return true;
+        }
+        int behind = (highest[t] - sequence) & 0xFFFF;
+        if (behind > RESET_DISTANCE || (behind >= WINDOW && isRestart(t, sequence))) {
+            start(t, sequence);
+            return true;
+        }
+        if (behind < WINDOW && (window[t] & (1L << behind)) != 0) {
+            duplicates[t]++;
+            return false;
+        }
+        if (behind < WINDOW) {
+            window[t] |= 1L << behind;
+        }
+        if (lost[t] > 0) {
+            lost[t]--;
+        }
+        reordered[t]++;
+        if (isStateMessage(type)) {
+            stale[t]++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Counts runs of packets below the window, each one a little ahead of the one before.
+     */
+    private boolean isRestart(int t, int sequence) {
+        int step = (sequence - restartCandidate[t]) & 0xFFFF;
+        restartRun[t] = restartRun[t] > 0 && step != 0 && step < WINDOW ? restartRun[t] + 1 : 1;
+        restartCandidate[t] = sequence;
+        return restartRun[t] >= RESTART_RUN;
+    }
+
+    private void start(int t, int sequence) {
+        started[t] = true;
+        highest[t] = sequence;
+        window[t] = 1;
+        restartRun[t] = 0;
+    }
+
+    /**
+     * Forgets the numbering of every type, for when the server changed or may have restarted. The
+     * counters are kept.
+     */
+    public void reset() {
+        for (int t = 0; t < TYPES; t++) {
+            started[t] = false;
+            restartRun[t] = 0;
+        }
+    }
+
+    private static boolean isStateMessage(byte type) {
+        return type == FULL_STATS || type == STATS_DELTA || type == GAME_TIMER;
+    }
+
+    public long getReceived(byte type) {
+        return received[type & 0xFF];
+    }
+
+    public long getDuplicates(byte type) {
+        return duplicates[type & 0xFF];
+    }
+
+    public long getReordered(byte type) {
+        return reordered[type & 0xFF];
+    }
+
+    public long getStale(byte type) {
+        return stale[type & 0xFF];
+    }
+
+    public long getLost(byte type) {
+        return lost[type & 0xFF];
+    }
+
+    /**
+     * Human readable counters of every type seen so far, for logs and debug screens.
+     */
+    public void dump(StringBuilder out) {
+        for (int t = 0; t < TYPES; t++) {
+            if (received[t] == 0) {
+                continue;
+            }
+            out.append("type ").append(t)
+                    .append(": received ").append(received[t])
+                    .append(", lost ").append(lost[t])
+                    .append(", reordered ").append(reordered[t])
+                    .append(", duplicates ").append(duplicates[t])
+                    .append(", stale ").append(stale[t])
+                    .append('\n');
+        }
+    }
+}
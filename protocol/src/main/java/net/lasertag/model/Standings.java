@@ -0,0 +1,235 @@
+package net.lasertag.model;
+
+/**
+ * Ranking and team totals of a roster, maintained incrementally and free of Android dependencies.
+ * <p>
+ * Players are keyed by id in primitive arrays. A score change moves the player past only the players
+ * it overtakes or falls behind, so a nearly unchanged roster costs a pass over the changed players
+ * and nothing is ever re-sorted. Players with equal scores keep their relative order. Team totals are
+ * adjusted by the score difference. Leader queries are constant time, team leader queries after a
+ * change scan the teams in play once. Not thread-safe.
+ */
+public class Standings {
+
+    public static final int TIE = -1;
+
+    private static final int MAX_ID = 256;
+
+    private final boolean[] present = new boolean[MAX_ID];
+    private final int[] scoreById = new int[MAX_ID];
+    private final int[] teamById = new int[MAX_ID];
+    private final int[] rankById = new int[MAX_ID];
+    private final int[] idByRank = new int[MAX_ID];
+    private final int[] seenInUpdate = new int[MAX_ID];
+    private int playerCount = 0;
+    private int updateStamp = 0;
+    private long rankVersion = 0;
+
+    private final int[] teamTotals = new int[MAX_ID];
+    private final int[] teamMembers = new int[MAX_ID];
+    private final int[] teamIds = new int[MAX_ID];
+    private int teamCount = 0;
+    private int leaderTeam = TIE;
+    private boolean leaderTeamDirty = false;
+
+    /**
+     * Brings the standings in line with a full roster, in any order. Players missing from it are removed.
+     */
+    public void update(Player[] players) {
+        updateStamp++;
+        for (Player player : players) {
+            put(player.getId(), player.getScore(), player.getTeamId());
+            seenInUpdate[player.getId() & 0xFF] = updateStamp;
+        }
+        for (int rank = playerCount - 1; rank >= 0 && playerCount > players.length; rank--) {
+            var id = idByRank[rank];
+            if (seenInUpdate[id] != updateStamp) {
+                remove((byte) id);
+            }
+        }
+    }
+
+    public void put(byte id, int score, int teamId) {
+        var slot = id & 0xFF;
+        if (!present[slot]) {
+            present[slot] = true;
+            scoreById[slot] = score;
+            teamById[slot] = teamId;
+            rankById[slot] = playerCount;
+            idByRank[playerCount++] = slot;
+            joinTeam(teamId, score);
+            moveUp(slot);
+            rankVersion++;
+            return;
+        }
+        if (teamById[slot] != teamId) {
+            leaveTeam(teamById[slot], scoreById[slot]);
+            teamById[slot] = teamId;
+            joinTeam(teamId, scoreById[slot]);
+        }
+        var previous = scoreById[slot];
+        if (score == previous) {
+            return;
+        }
+        scoreById[slot] = score;
+        teamTotals[teamId & 0xFF] += score - previous;
+        leaderTeamDirty = true;
+        if (score > previous ? moveUp(slot) : moveDown(slot)) {
+            rankVersion++;
+        }
+    }
+
+    public void remove(byte id) {
+        var slot = id & 0xFF;
+        if (!present[slot]) {
+            return;
+        }
+        present[slot] = false;
+        leaveTeam(teamById[slot], scoreById[slot]);
+        for (int rank = rankById[slot]; rank < playerCount - 1; rank++) {
+            idByRank[rank] = idByRank[rank + 1];
+            rankById[idByRank[rank]] = rank;
+        }
+        playerCount--;
+        rankVersion++;
+    }
+
+    public void clear() {
+        for (int rank = 0; rank < playerCount; rank++) {
+            present[idByRank[rank]] = false;
+        }
+        for (int i = 0; i < teamCount; i++) {
+            teamTotals[teamIds[i]] = 0;
+            teamMembers[teamIds[i]] = 0;
+        }
+        playerCount = 0;
+        teamCount = 0;
+        leaderTeam = TIE;
+        leaderTeamDirty = false;
+        rankVersion++;
+    }
+
+    private boolean moveUp(int slot) {
+        var score = scoreById[slot];
+        var rank = rankById[slot];
+        var start = rank;
+        while (rank > 0 && scoreById[idByRank[rank - 1]] < score) {
+            idByRank[rank] = idByRank[rank - 1];
+            rankById[idByRank[rank]] = rank;
+            rank--;
+        }
+        idByRank[rank] = slot;
+        rankById[slot] = rank;
+        return rank != start;
+    }
+
+    private boolean moveDown(int slot) {
+        var score = scoreById[slot];
+        var rank = rankById[slot];
+        var start = rank;
+        while (rank < playerCount - 1 && scoreById[idByRank[rank + 1]] > score) {
+            idByRank[rank] = idByRank[rank + 1];
+            rankById[idByRank[rank]] = rank;
+            rank++;
+        }
+        idByRank[rank] = slot;
+        rankById[slot] = rank;
+        return rank != start;
+    }
+
+    private void joinTeam(int teamId, int score) {
+        var team = teamId & 0xFF;
+        if (teamMembers[team]++ == 0) {
+            teamIds[teamCount++] = team;
+            teamTotals[team] = 0;
+        }
+        teamTotals[team] += score;
+        leaderTeamDirty = true;
+    }
+
+    private void leaveTeam(int teamId, int score) {
+        var team = teamId & 0xFF;
+        teamTotals[team] -= score;
+        if (--teamMembers[team] == 0) {
+            for (int i = 0; i < teamCount; i++) {
+                if (teamIds[i] == team) {
+                    teamIds[i] = teamIds[--teamCount];
+                    break;
+                }
+            }
+        }
+        leaderTeamDirty = true;
+    }
+
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    /**
+     * Id of the player at the given rank, 0 being the top scorer.
+     */
+    public byte getIdAt(int rank) {
+        return (byte) idByRank[rank];
+    }
+
+    /**
+     * Rank of the player, or -1 when not in the standings.
+     */
+    public int getRank(byte id) {
+        return present[id & 0xFF] ? rankById[id & 0xFF] : -1;
+    }
+
+    public int getScore(byte id) {
+        return scoreById[id & 0xFF];
+    }
+
+    /**
+     * Changes whenever any player's rank changes, so callers can skip re-laying out an unchanged order.
+     */
+    public long getRankVersion() {
+        return rankVersion;
+    }
+
+    public boolean hasTeam(int teamId) {
+        return teamMembers[teamId & 0xFF] > 0;
+    }
+
+    public int getTeamScore(int teamId) {
+        return teamTotals[teamId & 0xFF];
+    }
+
+    /**
+     * Id of the single top scorer, or TIE when the top score is shared or there are no players.
+     */
+    public int getLeaderPlayer() {
+        if (playerCount == 0) {
+            return TIE;
+        }
+        var leader = idByRank[0];
+        if (playerCount > 1 && scoreById[idByRank[1]] == scoreById[leader]) {
+            return TIE;
+        }
+        return leader;
+    }
+
+    /**
+     * Id of the team with the highest total score, or TIE when several teams share it.
+     */
+    public int getLeaderTeam() {
+        if (leaderTeamDirty) {
+            leaderTeamDirty = false;
+            leaderTeam = TIE;
+            var best = Integer.MIN_VALUE;
+            for (int i = 0; i < teamCount; i++) {
+                var total = teamTotals[teamIds[i]];
+                if (total > best) {
+                    best = total;
+                    leaderTeam = teamIds[i];
+                } else if (total == best) {
+                    leaderTeam = TIE;
+                }
+            }
+        }
+        return leaderTeam;
+    }
+}
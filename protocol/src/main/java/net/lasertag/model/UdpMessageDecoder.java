@@ -0,0 +1,222 @@
+package net.lasertag.model;
+
+import static net.lasertag.model.UdpMessages.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decodes datagrams into pooled message instances, so that steady-state decoding allocates nothing.
+ * <p>
+ * Messages are recycled in a ring per message kind: a returned message stays valid until the decoder
+ * has produced {@link #POOL_SIZE} further messages of the same kind. Consumers that keep a message
+ * longer than that must copy it. STATS_DELTA and FULL_STATS_FRAGMENT are each decoded into a single
+ * instance, since they are meant to be applied to a {@link GameStateStore} right away. Not thread-safe,
+ * meant to be owned by the receiving thread.
+ */
+public class UdpMessageDecoder {
+
+    public static final int POOL_SIZE = 32;
+
+    private final AckMessage[] ackPool = new AckMessage[POOL_SIZE];
+    private final EventMessage[] eventPool = new EventMessage[POOL_SIZE];
+    private final TimeMessage[] timePool = new TimeMessage[POOL_SIZE];
+    private final StatsMessage[] statsPool = new StatsMessage[POOL_SIZE];
+    private final StatsDeltaMessage deltaMessage = new StatsDeltaMessage();
+    private final StatsFragmentMessage fragmentMessage = new StatsFragmentMessage();
+    private int ackIndex = 0;
+    private int eventIndex = 0;
+    private int timeIndex = 0;
+    private int statsIndex = 0;
+
+    private final NameCache nameCache = new NameCache();
+    private final byte[] nameScratch = new byte[256];
+
+    private final MessageRegistry registry = new MessageRegistry();
+
+    private ByteBuffer arrayView;
+
+    public UdpMessageDecoder() {
+        registry.register(PING, this::parseAckMessage);
+        registry.register(FULL_STATS, (type, buffer) -> parseFullStatsMessage(buffer));
+        registry.register(STATS_DELTA, (type, buffer) -> parseStatsDeltaMessage(buffer));
+        registry.register(FULL_STATS_FRAGMENT, (type, buffer) -> parseStatsFragmentMessage(buffer));
+        registry.register(GAME_TIMER, this::parseTimeMessage);
+        for (byte type : EVENT_TYPES) {
+            registry.register(type, this::parseEventMessage);
+        }
+    }
+
+    /**
+     * Per-type message and byte counters, and what could not be decoded.
+     */
+    public MessageRegistry getRegistry() {
+        return registry;
+    }
+
+    public UdpMessage decode(byte[] bytes, int length) {
+        if (arrayView == null || arrayView.array() != bytes) {
+            arrayView = ByteBuffer.wrap(bytes);
+        }
+        arrayView.clear();
+        arrayView.limit(length);
+        return decode(arrayView);
+    }
+
+    /**
+     * Decodes the datagram between the buffer's position and limit, heap or direct. Returns null for
+     * unknown types and truncated datagrams.
+     */
+    public UdpMessage decode(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return registry.decode(buffer);
+    }
+
+    private AckMessage parseAckMessage(byte type, ByteBuffer buffer) {
+        // a server that echoes the heartbeat sends back [playerId, first, u16 sequence], optionally
+        // followed by i64 receive and transmit times for clock sync
+        var ackMessage = ackPool[ackIndex];
+        if (ackMessage == null) {
+            ackMessage = new AckMessage(type);
+            ackPool[ackIndex] = ackMessage;
+        }
+        ackIndex = (ackIndex + 1) % POOL_SIZE;
+        var remaining = buffer.remaining();
+        var position = buffer.position();
+        ackMessage.setSequence(remaining >= 4 ? buffer.getShort(position + 2) & 0xFFFF : NO_SEQUENCE);
+        ackMessage.setServerReceiveMicros(remaining >= 20 ? buffer.getLong(position + 4) : ClockSync.NO_TIME);
+        ackMessage.setServerTransmitMicros(remaining >= 20 ? buffer.getLong(position + 12) : ClockSync.NO_TIME);
+        return ackMessage;
+    }
+
+    private StatsMessage parseFullStatsMessage(ByteBuffer buffer) {
+        var message = statsPool[statsIndex];
+        if (message == null) {
+            message = new StatsMessage(FULL_STATS, false, false, (byte) 0, new Player[0]);
+            statsPool[statsIndex] = message;
+        }
+        statsIndex = (statsIndex + 1) % POOL_SIZE;
+
+        message.setGameRunning(buffer.get() != 0);
+        message.setTeamPlay(buffer.get() != 0);
+        var playersCount = buffer.get() & 0xFF;
+        var players = ensureRoster(message.getPlayers(), playersCount);
+        for (int i = 0; i < players.length; i++) {
+            parsePlayer(players[i], buffer);
+        }
+        message.setNumPlayers((byte) playersCount);
+        message.setPlayers(players);
+        message.setSequence(buffer.remaining() >= 2 ? buffer.getShort() & 0xFFFF : StatsMessage.NO_SEQUENCE);
+        return message;
+    }
+
+    /**
+     * Decoded into a single instance, to be applied to a {@link GameStateStore} right away.
+     */
+    private StatsFragmentMessage parseStatsFragmentMessage(ByteBuffer buffer) {
+        var message = fragmentMessage;
+        message.setSnapshotId(buffer.getShort() & 0xFFFF);
+        message.setFragmentIndex(buffer.get() & 0xFF);
+        message.setFragmentCount(buffer.get() & 0xFF);
+        var flags = buffer.get();
+        message.setGameRunning((flags & 1) != 0);
+        message.setTeamPlay((flags & 2) != 0);
+        message.setTotalPlayers(buffer.getShort() & 0xFFFF);
+        message.setFirstIndex(buffer.getShort() & 0xFFFF);
+        var count = buffer.get() & 0xFF;
+        var players = message.getPlayers();
+        for (int i = 0; i < count; i++) {
+            parsePlayer(players[i], buffer);
+        }
+        message.setNumPlayers(count);
+        message.setSequence((flags & 4) != 0 ? buffer.getShort() & 0xFFFF : NO_SEQUENCE);
+        return message;
+    }
+
+    private void parsePlayer(Player player, ByteBuffer buffer) {
+        player.setId(buffer.get());
+        player.setHealth(buffer.get());
+        player.setScore(buffer.get());
+        player.setTeamId(buffer.get());
+        var nameLength = buffer.get() & 0xFF;
+        buffer.get(nameScratch, 0, nameLength);
+        player.setName(nameCache.intern(nameScratch, 0, nameLength));
+    }
+
+    private StatsDeltaMessage parseStatsDeltaMessage(ByteBuffer buffer) {
+        var message = deltaMessage;
+        message.setSequence(buffer.getShort() & 0xFFFF);
+        message.setBaseSequence(buffer.getShort() & 0xFFFF);
+        var flags = buffer.get();
+        message.setGameRunning((flags & 1) != 0);
+        message.setTeamPlay((flags & 2) != 0);
+        var count = buffer.get() & 0xFF;
+        for (int i = 0; i < count; i++) {
+            var id = buffer.get();
+            var mask = buffer.get();
+            message.getIds()[i] = id;
+            message.getMasks()[i] = mask;
+            if ((mask & StatsDeltaMessage.FIELD_HEALTH) != 0) {
+                message.getHealths()[i] = buffer.get();
+            }
+            if ((mask & StatsDeltaMessage.FIELD_SCORE) != 0) {
+                message.getScores()[i] = buffer.get();
+            }
+            if ((mask & StatsDeltaMessage.FIELD_TEAM) != 0) {
+                message.getTeamIds()[i] = buffer.get();
+            }
+            if ((mask & StatsDeltaMessage.FIELD_NAME) != 0) {
+                var nameLength = buffer.get() & 0xFF;
+                buffer.get(nameScratch, 0, nameLength);
+                message.getNames()[i] = nameCache.intern(nameScratch, 0, nameLength);
+            }
+        }
+        message.setNumChanges(count);
+        return message;
+    }
+
+    private TimeMessage parseTimeMessage(byte type, ByteBuffer buffer) {
+        var message = timePool[timeIndex];
+        if (message == null) {
+            message = new TimeMessage(type, (byte) 0, (byte) 0);
+            timePool[timeIndex] = message;
+        }
+        timeIndex = (timeIndex + 1) % POOL_SIZE;
+        message.setType(type);
+        message.setMinutes(buffer.get());
+        message.setSeconds(buffer.get());
+        message.setEndsAtServerMicros(buffer.remaining() >= 8 ? buffer.getLong() : ClockSync.NO_TIME);
+        message.setEndsAtNanos(0);
+        return message;
+    }
+
+    private EventMessage parseEventMessage(byte type, ByteBuffer buffer) {
+        var message = eventPool[eventIndex];
+        if (message == null) {
+            message = new EventMessage(type, (byte) 0, (byte) 0, (byte) 0, (byte) 0);
+            eventPool[eventIndex] = message;
+        }
+        eventIndex = (eventIndex + 1) % POOL_SIZE;
+        message.setType(type);
+        message.setCounterpartPlayerId(buffer.get());
+        message.setHealth(buffer.get());
+        message.setScore(buffer.get());
+        message.setBulletsLeft(buffer.get());
+        return message;
+    }
+
+    /**
+     * Grows or shrinks a pooled roster, keeping existing Player instances. Only allocates when the
+     * number of players changes.
+     */
+    static Player[] ensureRoster(Player[] roster, int count) {
+        if (roster.length == count) {
+            return roster;
+        }
+        var resized = new Player[count];
+        for (int i = 0; i < count; i++) {
+            resized[i] = i < roster.length ? roster[i] : new Player((byte) 0, (byte) 0, (byte) 0, (byte) 0, "");
+        }
+        return resized;
+    }
+}
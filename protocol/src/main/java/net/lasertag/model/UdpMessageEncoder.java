@@ -0,0 +1,171 @@
+package net.lasertag.model;
+
+import static net.lasertag.model.UdpMessages.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Server side of the wire format, used by tools and benchmarks. Each method writes one message at the
+ * buffer's position; the caller flips the buffer before sending.
+ */
+public class UdpMessageEncoder {
+
+    /** Fragment header plus the optional trailing sequence. */
+    private static final int STATS_FRAGMENT_HEADER_SIZE = 13;
+
+    public static void encodeSequenceHeader(ByteBuffer out, int sequence) {
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        out.put(SEQUENCE_HEADER);
+        out.putShort((short) sequence);
+    }
+
+    public static void encodePing(ByteBuffer out, byte playerId, boolean firstEverMessage) {
+        out.put(PING).put(playerId).put(firstEverMessage ? (byte) 1 : (byte) 0);
+    }
+
+    /**
+     * Heartbeat with a trailing u16 sequence, which the server echoes back for RTT measurement.
+     */
+    public static void encodePing(ByteBuffer out, byte playerId, boolean firstEverMessage, int sequence) {
+        encodePing(out, playerId, firstEverMessage);
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        out.putShort((short) sequence);
+    }
+
+    /**
+     * Sequenced heartbeat that also acknowledges reliable messages: the newest id received and a u32
+     * bitmap of the ids before it, see {@link ReliableInbox}.
+     */
+    public static void encodePing(ByteBuffer out, byte playerId, boolean firstEverMessage, int sequence,
+                                  int ackLatest, long ackBits) {
+        encodePing(out, playerId, firstEverMessage, sequence);
+        out.putShort((short) ackLatest).putInt((int) ackBits);
+    }
+
+    public static void encodeReliableHeader(ByteBuffer out, int id) {
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        out.put(RELIABLE_HEADER);
+        out.putShort((short) id);
+    }
+
+    /**
+     * Reply to a sequenced heartbeat with the server's receive and transmit times, for clock sync.
+     */
+    public static void encodePong(ByteBuffer out, byte playerId, boolean firstEverMessage, int sequence,
+                                  long receiveMicros, long transmitMicros) {
+        encodePing(out, playerId, firstEverMessage, sequence);
+        out.putLong(receiveMicros).putLong(transmitMicros);
+    }
+
+    public static void encodeEvent(ByteBuffer out, byte type, byte counterpartPlayerId, byte health, byte score, byte bulletsLeft) {
+        out.put(type).put(counterpartPlayerId).put(health).put(score).put(bulletsLeft);
+    }
+
+    public static void encodeTime(ByteBuffer out, byte minutes, byte seconds) {
+        out.put(GAME_TIMER).put(minutes).put(seconds);
+    }
+
+    /**
+     * Timer anchored to the server clock, so clients can count down locally between timer messages.
+     */
+    public static void encodeTime(ByteBuffer out, byte minutes, byte seconds, long endsAtServerMicros) {
+        encodeTime(out, minutes, seconds);
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        out.putLong(endsAtServerMicros);
+    }
+
+    /**
+     * Pass StatsMessage.NO_SEQUENCE to leave out the trailing baseline sequence.
+     */
+    public static void encodeFullStats(ByteBuffer out, boolean gameRunning, boolean teamPlay, Player[] players, int sequence) {
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        out.put(FULL_STATS);
+        out.put(gameRunning ? (byte) 1 : (byte) 0);
+        out.put(teamPlay ? (byte) 1 : (byte) 0);
+        out.put((byte) players.length);
+        for (Player player : players) {
+            encodePlayer(out, player);
+        }
+        if (sequence != StatsMessage.NO_SEQUENCE) {
+            out.putShort((short) sequence);
+        }
+    }
+
+    /**
+     * One fragment of a snapshot that does not fit a datagram: count players of the roster starting at
+     * first. Use {@link #fitPlayers} to size fragments within {@link UdpMessages#STATS_FRAGMENT_MAX_BYTES}.
+     */
+    public static void encodeStatsFragment(ByteBuffer out, int snapshotId, int fragmentIndex, int fragmentCount,
+                                           boolean gameRunning, boolean teamPlay, Player[] players, int first,
+                                           int count, int sequence) {
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        out.put(FULL_STATS_FRAGMENT);
+        out.putShort((short) snapshotId);
+        out.put((byte) fragmentIndex).put((byte) fragmentCount);
+        out.put((byte) ((gameRunning ? 1 : 0) | (teamPlay ? 2 : 0) | (sequence != NO_SEQUENCE ? 4 : 0)));
+        out.putShort((short) players.length);
+        out.putShort((short) first);
+        out.put((byte) count);
+        for (int i = first; i < first + count; i++) {
+            encodePlayer(out, players[i]);
+        }
+        if (sequence != NO_SEQUENCE) {
+            out.putShort((short) sequence);
+        }
+    }
+
+    /**
+     * How many players from first on fit in one fragment of at most maxBytes, at least one.
+     */
+    public static int fitPlayers(Player[] players, int first, int maxBytes) {
+        var size = STATS_FRAGMENT_HEADER_SIZE;
+        var count = 0;
+        while (first + count < players.length && count < StatsFragmentMessage.MAX_PLAYERS) {
+            size += 5 + Math.min(players[first + count].getName().getBytes(StandardCharsets.UTF_8).length, 255);
+            if (size > maxBytes && count > 0) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    public static void encodeStatsDelta(ByteBuffer out, StatsDeltaMessage delta) {
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        out.put(STATS_DELTA);
+        out.putShort((short) delta.getSequence());
+        out.putShort((short) delta.getBaseSequence());
+        out.put((byte) ((delta.isGameRunning() ? 1 : 0) | (delta.isTeamPlay() ? 2 : 0)));
+        out.put((byte) delta.getNumChanges());
+        for (int i = 0; i < delta.getNumChanges(); i++) {
+            var mask = delta.getMasks()[i];
+            out.put(delta.getIds()[i]).put(mask);
+            if ((mask & StatsDeltaMessage.FIELD_HEALTH) != 0) {
+                out.put(delta.getHealths()[i]);
+            }
+            if ((mask & StatsDeltaMessage.FIELD_SCORE) != 0) {
+                out.put(delta.getScores()[i]);
+            }
+            if ((mask & StatsDeltaMessage.FIELD_TEAM) != 0) {
+                out.put(delta.getTeamIds()[i]);
+            }
+            if ((mask & StatsDeltaMessage.FIELD_NAME) != 0) {
+                encodeName(out, delta.getNames()[i]);
+            }
+        }
+    }
+
+    private static void encodePlayer(ByteBuffer out, Player player) {
+        out.put(player.getId()).put(player.getHealth()).put(player.getScore()).put(player.getTeamId());
+        encodeName(out, player.getName());
+    }
+
+    private static void encodeName(ByteBuffer out, String name) {
+        var bytes = name.getBytes(StandardCharsets.UTF_8);
+        var length = Math.min(bytes.length, 255);
+        out.put((byte) length);
+        out.put(bytes, 0, length);
+    }
+}
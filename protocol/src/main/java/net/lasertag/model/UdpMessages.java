@@ -0,0 +1,100 @@
+package net.lasertag.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class UdpMessages {
+
+    public static final int SERVER_PORT = 9878;
+    public static final int CLIENT_PORT = 1234;
+
+    public static final byte PING = 1;
+    public static final byte GUN_SHOT = 2;
+    public static final byte GUN_RELOAD = 3;
+    public static final byte YOU_HIT_SOMEONE = 4;
+    public static final byte GOT_HIT = 5;
+    public static final byte RESPAWN = 6;
+    public static final byte GAME_OVER = 7;
+    public static final byte GAME_START = 8;
+    public static final byte YOU_KILLED = 9;
+    public static final byte YOU_SCORED = 10;
+    public static final byte FULL_STATS = 11;
+    public static final byte GUN_NO_BULLETS = 12;
+    public static final byte STATS_DELTA = 13;
+    public static final byte STATS_RESYNC = 14;
+    public static final byte FULL_STATS_FRAGMENT = 15;
+    public static final byte GAME_TIMER = 101;
+
+    /** Types that decode into an {@link EventMessage}. */
+    public static final byte[] EVENT_TYPES = {
+            GUN_SHOT, GUN_RELOAD, YOU_HIT_SOMEONE, GOT_HIT, RESPAWN, GAME_OVER, GAME_START, YOU_KILLED,
+            YOU_SCORED, GUN_NO_BULLETS
+    };
+
+    /**
+     * Optional prefix of any message: the marker byte followed by a u16 per-type sequence number.
+     */
+    public static final byte SEQUENCE_HEADER = (byte) 0xFE;
+    public static final int NO_SEQUENCE = -1;
+
+    /**
+     * Prefix of a message the server resends until it is acknowledged: the marker byte followed by a
+     * u16 message id. It comes before the sequence header, if both are present.
+     */
+    public static final byte RELIABLE_HEADER = (byte) 0xFD;
+
+    /** Types that change the player's state and are worth sending reliably. */
+    public static final byte[] RELIABLE_TYPES = {YOU_KILLED, RESPAWN, GAME_START, GAME_OVER};
+
+    /**
+     * Largest FULL_STATS_FRAGMENT a server should send, so fragments fit a single Wi-Fi frame and the
+     * client's receive buffer.
+     */
+    public static final int STATS_FRAGMENT_MAX_BYTES = 1200;
+
+    /**
+     * True when u16 sequence number a comes after b, taking wrap-around into account.
+     */
+    public static boolean isNewerSequence(int a, int b) {
+        int diff = (a - b) & 0xFFFF;
+        return diff != 0 && diff < 0x8000;
+    }
+
+    /**
+     * Consumes the sequence header if the datagram has one, leaving the buffer at the message type.
+     * Returns the sequence number, or NO_SEQUENCE.
+     */
+    public static int readSequenceHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < 3 || buffer.get(buffer.position()) != SEQUENCE_HEADER) {
+            return NO_SEQUENCE;
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.get();
+        return buffer.getShort() & 0xFFFF;
+    }
+
+    /**
+     * Consumes the reliable header if the datagram has one. Returns the message id, or NO_SEQUENCE.
+     */
+    public static int readReliableHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < 3 || buffer.get(buffer.position()) != RELIABLE_HEADER) {
+            return NO_SEQUENCE;
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.get();
+        return buffer.getShort() & 0xFFFF;
+    }
+
+    /**
+     * Whether the server sends messages of this type over the reliable channel.
+     */
+    public static boolean isReliableType(byte type) {
+        for (byte reliable : RELIABLE_TYPES) {
+            if (reliable == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
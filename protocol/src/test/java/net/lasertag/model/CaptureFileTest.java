@@ -0,0 +1,97 @@
+package net.lasertag.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class CaptureFileTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteBuffer out = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+
+    @Test
+    public void readsRecordsBackInOrder() throws IOException {
+        CaptureFile.writeHeader(out, 1234);
+        putRecord(100, 1, 2, 3);
+        putRecord(250, 4);
+
+        var capture = new CaptureFile(write(out.position()));
+
+        assertEquals(1234, capture.getStartMillis());
+        assertRecord(capture, 100, 1, 2, 3);
+        assertRecord(capture, 250, 4);
+        assertFalse(capture.next());
+
+        capture.rewind();
+        assertRecord(capture, 100, 1, 2, 3);
+    }
+
+    @Test
+    public void stopsAtZeroFilledTail() throws IOException {
+        CaptureFile.writeHeader(out, 0);
+        putRecord(100, 1);
+
+        var capture = new CaptureFile(write(out.capacity()));
+
+        assertRecord(capture, 100, 1);
+        assertFalse(capture.next());
+    }
+
+    @Test
+    public void stopsAtTruncatedRecord() throws IOException {
+        CaptureFile.writeHeader(out, 0);
+        putRecord(100, 1);
+        putRecord(200, 2, 3, 4);
+
+        var capture = new CaptureFile(write(out.position() - 1));
+
+        assertRecord(capture, 100, 1);
+        assertFalse(capture.next());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        out.putInt(0x12345678).putLong(0).putInt(0);
+
+        new CaptureFile(write(out.position()));
+    }
+
+    private void putRecord(long timestampNanos, int... data) {
+        out.putLong(timestampNanos).putShort((short) data.length);
+        for (int b : data) {
+            out.put((byte) b);
+        }
+    }
+
+    private File write(int length) throws IOException {
+        var file = folder.newFile();
+        Files.write(file.toPath(), Arrays.copyOf(out.array(), length));
+        return file;
+    }
+
+    private static void assertRecord(CaptureFile capture, long timestampNanos, int... data) {
+        assertTrue(capture.next());
+        assertEquals(timestampNanos, capture.getTimestampNanos());
+        var bytes = new byte[capture.getData().remaining()];
+        capture.getData().get(bytes);
+        var expected = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+            expected[i] = (byte) data[i];
+        }
+        assertArrayEquals(expected, bytes);
+    }
+}
@@ -0,0 +1,70 @@
+package net.lasertag.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ClockSyncTest {
+
+    private static final long SERVER_OFFSET_MICROS = 50_000;
+
+    private final ClockSync clock = new ClockSync();
+
+    @Test
+    public void estimatesOffsetAndDelay() {
+        assertFalse(clock.isSynced());
+
+        assertTrue(exchange(1, 1_000, 100, 100, 100));
+
+        assertTrue(clock.isSynced());
+        assertEquals(SERVER_OFFSET_MICROS, clock.getOffsetMicros());
+        assertEquals(200, clock.getDelayMicros());
+        assertEquals(1_150_000, clock.toLocalNanos(1_150 + SERVER_OFFSET_MICROS));
+    }
+
+    @Test
+    public void trustsSampleWithSmallestDelay() {
+        exchange(1, 1_000, 100, 100, 100);
+
+        exchange(2, 2_000, 5_000, 100, 100);
+
+        assertEquals(SERVER_OFFSET_MICROS, clock.getOffsetMicros());
+        assertEquals(200, clock.getDelayMicros());
+    }
+
+    @Test
+    public void forgetsBestSampleOnceOutOfWindow() {
+        exchange(1, 1_000, 100, 100, 100);
+        for (int sequence = 2; sequence <= 9; sequence++) {
+            exchange(sequence, sequence * 1_000, 1_000, 100, 300);
+        }
+
+        assertEquals(1_300, clock.getDelayMicros());
+        assertEquals(SERVER_OFFSET_MICROS + 350, clock.getOffsetMicros());
+    }
+
+    @Test
+    public void rejectsRepliesWithoutTimestampsOrPing() {
+        clock.onPingSent(1, 1_000_000);
+
+        assertFalse(clock.onPong(UdpMessages.NO_SEQUENCE, 0, 0, 2_000_000));
+        assertFalse(clock.onPong(1, ClockSync.NO_TIME, 0, 2_000_000));
+        assertFalse(clock.onPong(2, 0, 0, 2_000_000));
+        assertTrue(clock.onPong(1, 0, 0, 2_000_000));
+        assertFalse(clock.onPong(1, 0, 0, 2_000_000));
+    }
+
+    /**
+     * One ping exchange with a server SERVER_OFFSET_MICROS ahead, taking the given time on each leg and
+     * in the server.
+     */
+    private boolean exchange(int sequence, long sentMicros, long upMicros, long serverMicros, long downMicros) {
+        clock.onPingSent(sequence, sentMicros * 1000);
+        var serverReceive = sentMicros + upMicros + SERVER_OFFSET_MICROS;
+        var serverTransmit = serverReceive + serverMicros;
+        var received = sentMicros + upMicros + serverMicros + downMicros;
+        return clock.onPong(sequence, serverReceive, serverTransmit, received * 1000);
+    }
+}
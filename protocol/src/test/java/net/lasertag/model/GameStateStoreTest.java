@@ -0,0 +1,157 @@
+package net.lasertag.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GameStateStoreTest {
+
+    private static final long FRAME = 10_000_000L;
+
+    private final GameStateStore store = new GameStateStore();
+
+    @Test
+    public void appliesDeltaOnMatchingBaseline() {
+        store.applyFullStats(fullStats(roster(4, 0), 10));
+
+        assertEquals(GameStateStore.APPLIED, store.applyDelta(scoreDelta(11, 10, (byte) 3, (byte) 50)));
+
+        var snapshot = store.snapshot();
+        assertEquals(11, snapshot.getSequence());
+        assertEquals(3, snapshot.getPlayers()[0].getId());
+        assertEquals(50, snapshot.getPlayers()[0].getScore());
+    }
+
+    @Test
+    public void reportsGapAndStaleDeltas() {
+        store.applyFullStats(fullStats(roster(4, 0), 10));
+
+        assertEquals(GameStateStore.GAP, store.applyDelta(scoreDelta(13, 12, (byte) 1, (byte) 9)));
+        assertEquals(GameStateStore.APPLIED, store.applyDelta(scoreDelta(11, 10, (byte) 1, (byte) 9)));
+        assertEquals(GameStateStore.STALE, store.applyDelta(scoreDelta(11, 10, (byte) 1, (byte) 9)));
+    }
+
+    @Test
+    public void assemblesFragmentsAndRemovesPlayersNotMentioned() {
+        store.applyFullStats(fullStats(roster(12, 0), 1));
+        var players = roster(10, 5);
+
+        assertEquals(GameStateStore.PARTIAL, store.applyFragment(fragment(7, 0, 2, players, 0, 5, 2), 0));
+        assertEquals(12, store.snapshot().getNumPlayers());
+        assertEquals(GameStateStore.APPLIED, store.applyFragment(fragment(7, 1, 2, players, 5, 5, 2), FRAME));
+
+        assertEquals(10, store.snapshot().getNumPlayers());
+        assertEquals(2, store.getSequence());
+        assertEquals(GameStateStore.STALE, store.applyFragment(fragment(7, 1, 2, players, 5, 5, 2), 2 * FRAME));
+    }
+
+    @Test
+    public void expiredSnapshotDropsBaselineUntilNextOne() {
+        var players = roster(10, 0);
+        completeSnapshot(1, players, 1, 0);
+
+        store.applyFragment(fragment(2, 0, 2, players, 0, 5, 2), 0);
+
+        assertFalse(store.expireFragments(GameStateStore.FRAGMENT_TIMEOUT_NANOS));
+        assertTrue(store.expireFragments(GameStateStore.FRAGMENT_TIMEOUT_NANOS + 1));
+        assertEquals(1, store.getIncompleteSnapshots());
+        assertEquals(GameStateStore.GAP, store.applyDelta(scoreDelta(2, 1, (byte) 1, (byte) 9)));
+
+        completeSnapshot(3, players, 3, 2 * GameStateStore.FRAGMENT_TIMEOUT_NANOS);
+        assertEquals(GameStateStore.APPLIED, store.applyDelta(scoreDelta(4, 3, (byte) 1, (byte) 9)));
+    }
+
+    @Test
+    public void supersededSnapshotCountsAsIncomplete() {
+        var players = roster(10, 0);
+
+        store.applyFragment(fragment(1, 0, 2, players, 0, 5, 1), 0);
+        completeSnapshot(2, players, 2, FRAME);
+
+        assertEquals(1, store.getIncompleteSnapshots());
+        assertEquals(GameStateStore.STALE, store.applyFragment(fragment(1, 1, 2, players, 5, 5, 1), 2 * FRAME));
+    }
+
+    @Test
+    public void followsServerRestartingItsNumbering() {
+        var players = roster(10, 0);
+        for (int id = 0; id < 200; id++) {
+            completeSnapshot(id, players, id, id * FRAME);
+        }
+
+        var applied = 0;
+        for (int id = 0; id < 100; id++) {
+            if (completeSnapshot(id, players, 1000 + id, (200 + id) * FRAME) == GameStateStore.APPLIED) {
+                applied++;
+            }
+        }
+
+        assertEquals(100, applied);
+        assertEquals(GameStateStore.APPLIED, store.applyDelta(scoreDelta(1100, 1099, (byte) 1, (byte) 9)));
+    }
+
+    @Test
+    public void resetAcceptsAnyNumbering() {
+        var players = roster(10, 0);
+        completeSnapshot(10, players, 10, 0);
+
+        store.reset();
+
+        assertEquals(GameStateStore.APPLIED, completeSnapshot(5, players, 5, FRAME));
+        assertEquals(GameStateStore.APPLIED, store.applyDelta(scoreDelta(6, 5, (byte) 1, (byte) 9)));
+    }
+
+    /**
+     * Applies a snapshot in two fragments and returns the result of the last one.
+     */
+    private int completeSnapshot(int snapshotId, Player[] players, int sequence, long nowNanos) {
+        var half = players.length / 2;
+        store.applyFragment(fragment(snapshotId, 0, 2, players, 0, half, sequence), nowNanos);
+        return store.applyFragment(fragment(snapshotId, 1, 2, players, half, players.length - half, sequence), nowNanos);
+    }
+
+    private static StatsFragmentMessage fragment(int snapshotId, int index, int count, Player[] players, int first,
+                                                 int numPlayers, int sequence) {
+        var fragment = new StatsFragmentMessage();
+        fragment.setSnapshotId(snapshotId);
+        fragment.setFragmentIndex(index);
+        fragment.setFragmentCount(count);
+        fragment.setGameRunning(true);
+        fragment.setTotalPlayers(players.length);
+        fragment.setFirstIndex(first);
+        fragment.setNumPlayers(numPlayers);
+        fragment.setSequence(sequence);
+        for (int i = 0; i < numPlayers; i++) {
+            fragment.getPlayers()[i].copyFrom(players[first + i]);
+        }
+        return fragment;
+    }
+
+    private static StatsMessage fullStats(Player[] players, int sequence) {
+        var message = new StatsMessage(UdpMessages.FULL_STATS, true, false, (byte) players.length, players);
+        message.setSequence(sequence);
+        return message;
+    }
+
+    private static StatsDeltaMessage scoreDelta(int sequence, int baseSequence, byte id, byte score) {
+        var delta = new StatsDeltaMessage();
+        delta.setSequence(sequence);
+        delta.setBaseSequence(baseSequence);
+        delta.setGameRunning(true);
+        delta.setNumChanges(1);
+        delta.getIds()[0] = id;
+        delta.getMasks()[0] = StatsDeltaMessage.FIELD_SCORE;
+        delta.getScores()[0] = score;
+        return delta;
+    }
+
+    private static Player[] roster(int size, int firstId) {
+        var players = new Player[size];
+        for (int i = 0; i < size; i++) {
+            players[i] = new Player((byte) (firstId + i + 1), (byte) 100, (byte) i, (byte) 0, "Player" + (firstId + i + 1));
+        }
+        return players;
+    }
+}
@@ -0,0 +1,120 @@
+package net.lasertag.model;
+
+import static net.lasertag.model.UdpMessages.GOT_HIT;
+import static net.lasertag.model.UdpMessages.GUN_RELOAD;
+import static net.lasertag.model.UdpMessages.GUN_SHOT;
+import static net.lasertag.model.UdpMessages.YOU_HIT_SOMEONE;
+import static net.lasertag.model.UdpMessages.YOU_KILLED;
+import static net.lasertag.model.UdpMessages.YOU_SCORED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class MatchLogTest {
+
+    private static final byte PLAYER = 1;
+    private static final byte FRIEND = 2;
+    private static final byte FOE = 3;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteBuffer out = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+
+    @Test
+    public void indexesClosedLog() throws IOException {
+        writeMatch();
+        MatchLog.writeTrailer(out, 7, 6500);
+
+        var log = new MatchLog(write(out.position()));
+
+        assertEquals(PLAYER, log.getPlayerId());
+        assertEquals(1234, log.getStartMillis());
+        assertEquals(7, log.getRecordCount());
+        assertEquals(6500, log.getDurationMillis());
+        assertFalse(log.isCompacted());
+        assertEquals(1, log.getKills(FRIEND));
+        assertEquals(1, log.getKills(FOE));
+        assertEquals(1, log.getDeaths(FOE));
+        assertEquals(0, log.getDeaths(FRIEND));
+        assertEquals(1, log.getHitsGiven(FRIEND));
+        assertEquals(1, log.getHitsTaken(FOE));
+        assertEquals(2, log.getCount(YOU_SCORED));
+        assertEquals(6, log.getRecord(YOU_SCORED, 1));
+        assertEquals(0, log.getCount(UdpMessages.RESPAWN));
+        assertEquals(3, log.getScoreChangeCount());
+        assertEquals(2, log.getScoreChange(1));
+        assertEquals(2, log.getScore(log.getScoreChange(2)));
+    }
+
+    @Test
+    public void readsUnclosedLogUpToLastCompleteRecord() throws IOException {
+        writeMatch();
+
+        var log = new MatchLog(write(out.position() - 4));
+
+        assertEquals(6, log.getRecordCount());
+        assertEquals(5000, log.getDurationMillis());
+        assertEquals(1, log.getCount(YOU_SCORED));
+    }
+
+    @Test
+    public void compactingKeepsEverythingButGunRecords() throws IOException {
+        writeMatch();
+        MatchLog.writeTrailer(out, 7, 6500);
+        var log = new MatchLog(write(out.position()));
+
+        out.clear();
+        log.compactTo(out);
+        var file = write(out.position());
+
+        assertEquals(MatchLog.FLAG_COMPACTED, MatchLog.readFlags(file));
+        var compacted = new MatchLog(file);
+        assertTrue(compacted.isCompacted());
+        assertEquals(5, compacted.getRecordCount());
+        assertEquals(6500, compacted.getDurationMillis());
+        assertEquals(YOU_HIT_SOMEONE, compacted.getType(0));
+        assertEquals(0, compacted.getCount(GUN_SHOT));
+        assertEquals(1, compacted.getDeaths(FOE));
+        assertEquals(2, compacted.getScore(compacted.getRecordCount() - 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        out.putLong(0).putLong(0).putLong(0);
+
+        MatchLog.readFlags(write(out.position()));
+    }
+
+    /**
+     * Header and seven records: a hit and a kill on the friend, a hit taken and a death from the foe,
+     * a kill on the foe, with a shot and a reload in between.
+     */
+    private void writeMatch() {
+        MatchLog.writeHeader(out, 1234, PLAYER, 0);
+        MatchLog.putRecord(out, 0, GUN_SHOT, (byte) 0, (byte) 100, (byte) 0, (byte) 9);
+        MatchLog.putRecord(out, 1000, YOU_HIT_SOMEONE, FRIEND, (byte) 100, (byte) 0, (byte) 9);
+        MatchLog.putRecord(out, 2000, YOU_SCORED, FRIEND, (byte) 100, (byte) 1, (byte) 9);
+        MatchLog.putRecord(out, 3000, GOT_HIT, FOE, (byte) 50, (byte) 1, (byte) 9);
+        MatchLog.putRecord(out, 4000, YOU_KILLED, FOE, (byte) 0, (byte) 1, (byte) 9);
+        MatchLog.putRecord(out, 5000, GUN_RELOAD, (byte) 0, (byte) 100, (byte) 1, (byte) 10);
+        MatchLog.putRecord(out, 6000, YOU_SCORED, FOE, (byte) 100, (byte) 2, (byte) 10);
+    }
+
+    private File write(int length) throws IOException {
+        var file = folder.newFile();
+        Files.write(file.toPath(), Arrays.copyOf(out.array(), length));
+        return file;
+    }
+}
@@ -0,0 +1,136 @@
+package net.lasertag.model;
+
+import static net.lasertag.model.UdpMessages.GAME_TIMER;
+import static net.lasertag.model.UdpMessages.GOT_HIT;
+import static net.lasertag.model.UdpMessages.YOU_KILLED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MessageQueueTest {
+
+    private final MessageQueue queue = new MessageQueue();
+    private final UdpMessageDecoder decoder = new UdpMessageDecoder();
+    private final ByteBuffer datagram = ByteBuffer.allocate(16);
+    private final List<UdpMessage> delivered = new ArrayList<>();
+
+    @Test
+    public void floodOfStatsDoesNotCrowdOutEvents() {
+        StatsMessage latest = null;
+        for (int i = 0; i < 1000; i++) {
+            latest = stats();
+            queue.offer(latest);
+        }
+        var kill = event(YOU_KILLED, 7);
+        queue.offer(kill);
+
+        queue.drainTo(delivered::add);
+
+        assertEquals(2, delivered.size());
+        assertSame(latest, delivered.get(0));
+        assertEquals(kill, delivered.get(1));
+        assertEquals(999, queue.getCollapsedStatsCount());
+    }
+
+    @Test
+    public void keepsEveryEventInOrderWhileConsumerStalls() {
+        for (int i = 0; i < 100; i++) {
+            queue.offer(event(GOT_HIT, i));
+        }
+
+        queue.drainTo(delivered::add);
+
+        assertEvents(0, 100);
+        assertEquals(100 - MessageQueue.CAPACITY, queue.getOverflowCount());
+    }
+
+    @Test
+    public void goesBackToRingOnceOverflowIsDrained() {
+        for (int i = 0; i < 20; i++) {
+            queue.offer(event(GOT_HIT, i));
+        }
+        queue.drainTo(delivered::add);
+        assertEvents(0, 20);
+        delivered.clear();
+        for (int i = 20; i < 30; i++) {
+            queue.offer(event(GOT_HIT, i));
+        }
+
+        queue.drainTo(delivered::add);
+
+        assertEvents(20, 10);
+        assertEquals(20 - MessageQueue.CAPACITY, queue.getOverflowCount());
+    }
+
+    @Test
+    public void stateComesAfterEventsOfferedBeforeIt() {
+        var first = event(GOT_HIT, 1);
+        var second = event(GOT_HIT, 2);
+        var third = event(GOT_HIT, 3);
+        var stats = stats();
+        var timer = timer();
+
+        queue.offer(first);
+        queue.offer(stats());
+        queue.offer(second);
+        queue.offer(stats);
+        queue.offer(third);
+        queue.offer(timer);
+        queue.drainTo(delivered::add);
+
+        assertEquals(List.of(first, second, stats, third, timer), delivered);
+        assertEquals(1, queue.getCollapsedStatsCount());
+    }
+
+    @Test
+    public void queuedEventsOutliveDecoderPool() {
+        for (int i = 0; i < MessageQueue.CAPACITY; i++) {
+            queue.offer(event(GOT_HIT, i));
+        }
+        for (int i = 0; i < 2 * UdpMessageDecoder.POOL_SIZE; i++) {
+            event(GOT_HIT, 100);
+        }
+
+        queue.drainTo(delivered::add);
+
+        assertEvents(0, MessageQueue.CAPACITY);
+        assertEquals(0, queue.getOverflowCount());
+    }
+
+    private void assertEvents(int first, int count) {
+        assertEquals(count, delivered.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("event " + i, first + i, ((EventMessage) delivered.get(i)).getCounterpartPlayerId());
+        }
+    }
+
+    private UdpMessage event(byte type, int counterpart) {
+        datagram.clear();
+        UdpMessageEncoder.encodeEvent(datagram, type, (byte) counterpart, (byte) 100, (byte) 0, (byte) 10);
+        return decode();
+    }
+
+    private StatsMessage stats() {
+        datagram.clear();
+        UdpMessageEncoder.encodeFullStats(datagram, true, false, new Player[0], 1);
+        return (StatsMessage) decode();
+    }
+
+    private UdpMessage timer() {
+        datagram.clear();
+        UdpMessageEncoder.encodeTime(datagram, (byte) 5, (byte) 0);
+        var message = decode();
+        assertEquals(GAME_TIMER, message.getType());
+        return message;
+    }
+
+    private UdpMessage decode() {
+        datagram.flip();
+        return decoder.decode(datagram);
+    }
+}
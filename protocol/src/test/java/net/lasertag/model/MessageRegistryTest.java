@@ -0,0 +1,51 @@
+package net.lasertag.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class MessageRegistryTest {
+
+    private final UdpMessageDecoder decoder = new UdpMessageDecoder();
+    private final MessageRegistry registry = decoder.getRegistry();
+
+    @Test
+    public void countsDecodedMessagesAndBytes() {
+        var buffer = ByteBuffer.allocate(64);
+        UdpMessageEncoder.encodeEvent(buffer, UdpMessages.GOT_HIT, (byte) 2, (byte) 80, (byte) 3, (byte) 17);
+        buffer.flip();
+
+        assertNotNull(decoder.decode(buffer.duplicate()));
+        assertNotNull(decoder.decode(buffer.duplicate()));
+
+        assertEquals(2, registry.getMessageCount(UdpMessages.GOT_HIT));
+        assertEquals(2L * buffer.remaining(), registry.getByteCount(UdpMessages.GOT_HIT));
+    }
+
+    @Test
+    public void countsTruncatedDatagramsOnlyAsMalformed() {
+        var buffer = ByteBuffer.allocate(64);
+        UdpMessageEncoder.encodeEvent(buffer, UdpMessages.GOT_HIT, (byte) 2, (byte) 80, (byte) 3, (byte) 17);
+        buffer.flip();
+        buffer.limit(3);
+
+        assertNull(decoder.decode(buffer));
+        assertNull(decoder.decode(ByteBuffer.allocate(0)));
+
+        assertEquals(2, registry.getMalformedCount());
+        assertEquals(0, registry.getMessageCount(UdpMessages.GOT_HIT));
+        assertEquals(0, registry.getByteCount(UdpMessages.GOT_HIT));
+    }
+
+    @Test
+    public void countsUnknownTypes() {
+        assertNull(decoder.decode(ByteBuffer.wrap(new byte[]{(byte) 0xEE, 1, 2, 3})));
+
+        assertEquals(1, registry.getUnknownCount());
+        assertEquals(0, registry.getMalformedCount());
+    }
+}
@@ -0,0 +1,57 @@
+package net.lasertag.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class NameCacheTest {
+
+    private final NameCache cache = new NameCache();
+
+    @Test
+    public void returnsCachedNameForSameBytesAnywhere() {
+        var first = cache.intern(bytes("xxAlice"), 2, 5);
+        var second = cache.intern(bytes("Alice"), 0, 5);
+
+        assertEquals("Alice", first);
+        assertSame(first, second);
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void decodesUtf8AndTellsNamesApart() {
+        var name = bytes("Jürgen");
+
+        assertEquals("Jürgen", cache.intern(name, 0, name.length));
+        assertEquals("Jürge", cache.intern(name, 0, name.length - 1));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void startsOverWhenFull() {
+        var first = intern(0);
+        for (int i = 1; i < 384; i++) {
+            intern(i);
+        }
+        assertSame(first, intern(0));
+        assertEquals(384, cache.getMisses());
+
+        intern(384);
+
+        assertNotSame(first, intern(0));
+        assertEquals(386, cache.getMisses());
+    }
+
+    private String intern(int i) {
+        var name = bytes("Player" + i);
+        return cache.intern(name, 0, name.length);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,83 @@
+package net.lasertag.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ReliableInboxTest {
+
+    private final ReliableInbox inbox = new ReliableInbox();
+
+    @Test
+    public void rejectsResentCopies() {
+        assertTrue(inbox.accept(0));
+        assertTrue(inbox.accept(1));
+
+        assertFalse(inbox.accept(1));
+        assertFalse(inbox.accept(0));
+        assertEquals(2, inbox.getDuplicates());
+    }
+
+    @Test
+    public void acceptsLateIdsOnceAndAcknowledgesThem() {
+        inbox.accept(10);
+        inbox.accept(13);
+
+        assertEquals(13, inbox.getLatest());
+        assertEquals(0b100, inbox.getAckBits());
+        assertTrue(inbox.accept(11));
+        assertFalse(inbox.accept(11));
+        assertEquals(0b110, inbox.getAckBits());
+    }
+
+    @Test
+    public void keepsAckBitsWithinTheWindow() {
+        for (int id = 0; id < 100; id++) {
+            inbox.accept(id);
+        }
+
+        assertEquals(0xFFFFFFFFL, inbox.getAckBits());
+    }
+
+    @Test
+    public void acceptsAcrossWraparound() {
+        inbox.accept(0xFFFF);
+
+        assertTrue(inbox.accept(0));
+        assertEquals(0, inbox.getLatest());
+        assertEquals(1, inbox.getAckBits());
+    }
+
+    @Test
+    public void startsNewSessionWhenServerNumbersOver() {
+        for (int id = 0; id < 200; id++) {
+            inbox.accept(id);
+        }
+
+        var accepted = 0;
+        for (int id = 0; id < 100; id++) {
+            if (inbox.accept(id)) {
+                accepted++;
+            }
+        }
+
+        assertEquals(100, accepted);
+        assertEquals(2, inbox.getSessions());
+        assertFalse(inbox.accept(99));
+    }
+
+    @Test
+    public void resetForgetsEveryId() {
+        for (int id = 0; id < 10; id++) {
+            inbox.accept(id);
+        }
+
+        inbox.reset();
+
+        assertFalse(inbox.hasReceived());
+        assertTrue(inbox.accept(0));
+        assertTrue(inbox.accept(5));
+    }
+}
@@ -0,0 +1,63 @@
+package net.lasertag.model;
+
+import static net.lasertag.model.UdpMessages.NO_SEQUENCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RttEstimatorTest {
+
+    private static final long START = 1_000_000_000L;
+    private static final long MILLIS = 1_000_000L;
+
+    private final RttEstimator estimator = new RttEstimator();
+
+    @Test
+    public void firstSampleSetsSrttAndHalfOfItAsVariance() {
+        assertEquals(0, estimator.getTimeoutMicros());
+
+        estimator.onPingSent(1, START);
+        assertTrue(estimator.onPong(1, START + 10 * MILLIS));
+
+        assertTrue(estimator.hasSamples());
+        assertEquals(10_000, estimator.getSrttMicros());
+        assertEquals(5_000, estimator.getRttvarMicros());
+        assertEquals(30_000, estimator.getTimeoutMicros());
+    }
+
+    @Test
+    public void laterSamplesAreSmoothed() {
+        estimator.onPingSent(1, START);
+        estimator.onPong(1, START + 10 * MILLIS);
+
+        estimator.onPingSent(2, START + 100 * MILLIS);
+        estimator.onPong(2, START + 118 * MILLIS);
+
+        assertEquals(18_000, estimator.getLastSampleMicros());
+        assertEquals(11_000, estimator.getSrttMicros());
+        assertEquals(5_750, estimator.getRttvarMicros());
+    }
+
+    @Test
+    public void ignoresUnknownAndRepeatedReplies() {
+        estimator.onPingSent(1, START);
+
+        assertFalse(estimator.onPong(9, START + MILLIS));
+        assertTrue(estimator.onPong(1, START + MILLIS));
+        assertFalse(estimator.onPong(1, START + 2 * MILLIS));
+        assertEquals(1_000, estimator.getSrttMicros());
+    }
+
+    @Test
+    public void samplesUnsequencedReplyOnlyWithSinglePingOutstanding() {
+        estimator.onPingSent(1, START);
+        estimator.onPingSent(2, START + 100 * MILLIS);
+        assertFalse(estimator.onPong(NO_SEQUENCE, START + 105 * MILLIS));
+
+        estimator.onPingSent(3, START + 200 * MILLIS);
+        assertTrue(estimator.onPong(NO_SEQUENCE, START + 204 * MILLIS));
+        assertEquals(4_000, estimator.getLastSampleMicros());
+    }
+}
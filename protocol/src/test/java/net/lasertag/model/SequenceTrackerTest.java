@@ -0,0 +1,103 @@
+package net.lasertag.model;
+
+import static net.lasertag.model.UdpMessages.FULL_STATS;
+import static net.lasertag.model.UdpMessages.GOT_HIT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SequenceTrackerTest {
+
+    private final SequenceTracker tracker = new SequenceTracker();
+
+    @Test
+    public void rejectsDuplicates() {
+        assertTrue(tracker.accept(GOT_HIT, 10));
+        assertTrue(tracker.accept(GOT_HIT, 11));
+
+        assertFalse(tracker.accept(GOT_HIT, 11));
+        assertFalse(tracker.accept(GOT_HIT, 10));
+        assertEquals(2, tracker.getDuplicates(GOT_HIT));
+    }
+
+    @Test
+    public void deliversLateEventsButDropsStaleState() {
+        tracker.accept(GOT_HIT, 1);
+        tracker.accept(GOT_HIT, 3);
+        tracker.accept(FULL_STATS, 1);
+        tracker.accept(FULL_STATS, 3);
+
+        assertEquals(1, tracker.getLost(GOT_HIT));
+        assertTrue(tracker.accept(GOT_HIT, 2));
+        assertFalse(tracker.accept(FULL_STATS, 2));
+        assertEquals(0, tracker.getLost(GOT_HIT));
+        assertEquals(1, tracker.getReordered(GOT_HIT));
+        assertEquals(1, tracker.getStale(FULL_STATS));
+    }
+
+    @Test
+    public void acceptsAcrossWraparound() {
+        tracker.accept(FULL_STATS, 0xFFFE);
+
+        assertTrue(tracker.accept(FULL_STATS, 0xFFFF));
+        assertTrue(tracker.accept(FULL_STATS, 0));
+        assertTrue(tracker.accept(FULL_STATS, 1));
+        assertEquals(0, tracker.getLost(FULL_STATS));
+    }
+
+    @Test
+    public void detectsEarlyServerRestart() {
+        for (int sequence = 0; sequence <= 500; sequence++) {
+            tracker.accept(FULL_STATS, sequence);
+        }
+
+        var accepted = 0;
+        for (int sequence = 0; sequence < 300; sequence++) {
+            if (tracker.accept(FULL_STATS, sequence)) {
+                accepted++;
+            }
+        }
+
+        assertEquals(298, accepted);
+    }
+
+    @Test
+    public void detectsRestartWithLoss() {
+        for (int sequence = 0; sequence <= 200; sequence++) {
+            tracker.accept(FULL_STATS, sequence);
+        }
+
+        assertFalse(tracker.accept(FULL_STATS, 0));
+        assertFalse(tracker.accept(FULL_STATS, 3));
+        assertTrue(tracker.accept(FULL_STATS, 7));
+        assertTrue(tracker.accept(FULL_STATS, 8));
+    }
+
+    @Test
+    public void scatteredOldPacketsAreNotARestart() {
+        for (int sequence = 0; sequence <= 500; sequence++) {
+            tracker.accept(GOT_HIT, sequence);
+        }
+
+        tracker.accept(GOT_HIT, 100);
+        tracker.accept(GOT_HIT, 300);
+        tracker.accept(GOT_HIT, 200);
+
+        assertFalse(tracker.accept(GOT_HIT, 500));
+    }
+
+    @Test
+    public void resetStartsNumberingOver() {
+        for (int sequence = 0; sequence <= 500; sequence++) {
+            tracker.accept(FULL_STATS, sequence);
+        }
+
+        tracker.reset();
+
+        assertTrue(tracker.accept(FULL_STATS, 0));
+        assertTrue(tracker.accept(FULL_STATS, 1));
+        assertEquals(503, tracker.getReceived(FULL_STATS));
+    }
+}
@@ -0,0 +1,103 @@
+package net.lasertag.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class StandingsTest {
+
+    private final Standings standings = new Standings();
+
+    @Test
+    public void ranksByScoreKeepingOrderOfEqualScores() {
+        standings.put((byte) 1, 5, 0);
+        standings.put((byte) 2, 5, 0);
+        standings.put((byte) 3, 7, 0);
+
+        assertOrder(3, 1, 2);
+        assertEquals(3, standings.getLeaderPlayer());
+
+        standings.put((byte) 2, 7, 0);
+
+        assertOrder(3, 2, 1);
+        assertEquals(Standings.TIE, standings.getLeaderPlayer());
+    }
+
+    @Test
+    public void rankVersionChangesOnlyWithOrder() {
+        standings.put((byte) 1, 10, 0);
+        standings.put((byte) 2, 5, 0);
+        var version = standings.getRankVersion();
+
+        standings.put((byte) 2, 6, 0);
+        assertEquals(version, standings.getRankVersion());
+        assertEquals(6, standings.getScore((byte) 2));
+
+        standings.put((byte) 2, 11, 0);
+        assertOrder(2, 1);
+        assertTrue(standings.getRankVersion() != version);
+    }
+
+    @Test
+    public void teamTotalsFollowScoresAndTeamChanges() {
+        standings.put((byte) 1, 5, 1);
+        standings.put((byte) 2, 3, 2);
+        standings.put((byte) 3, 4, 2);
+
+        assertEquals(5, standings.getTeamScore(1));
+        assertEquals(7, standings.getTeamScore(2));
+        assertEquals(2, standings.getLeaderTeam());
+
+        standings.put((byte) 3, 4, 1);
+        assertEquals(9, standings.getTeamScore(1));
+        assertEquals(3, standings.getTeamScore(2));
+        assertEquals(1, standings.getLeaderTeam());
+
+        standings.put((byte) 2, 9, 2);
+        assertEquals(Standings.TIE, standings.getLeaderTeam());
+
+        standings.remove((byte) 2);
+        assertFalse(standings.hasTeam(2));
+        assertEquals(1, standings.getLeaderTeam());
+    }
+
+    @Test
+    public void updateRemovesPlayersMissingFromRoster() {
+        standings.update(new Player[]{player(1, 3, 1), player(2, 2, 1), player(3, 1, 2)});
+
+        standings.update(new Player[]{player(3, 4, 2), player(1, 3, 1)});
+
+        assertEquals(2, standings.getPlayerCount());
+        assertOrder(3, 1);
+        assertEquals(-1, standings.getRank((byte) 2));
+        assertEquals(3, standings.getTeamScore(1));
+    }
+
+    @Test
+    public void clearEmptiesStandings() {
+        standings.put((byte) 1, 5, 1);
+        standings.put((byte) 2, 3, 2);
+
+        standings.clear();
+
+        assertEquals(0, standings.getPlayerCount());
+        assertEquals(-1, standings.getRank((byte) 1));
+        assertFalse(standings.hasTeam(1));
+        assertEquals(Standings.TIE, standings.getLeaderPlayer());
+        assertEquals(Standings.TIE, standings.getLeaderTeam());
+    }
+
+    private void assertOrder(int... ids) {
+        assertEquals(ids.length, standings.getPlayerCount());
+        for (int rank = 0; rank < ids.length; rank++) {
+            assertEquals("rank " + rank, ids[rank], standings.getIdAt(rank));
+            assertEquals(rank, standings.getRank((byte) ids[rank]));
+        }
+    }
+
+    private static Player player(int id, int score, int teamId) {
+        return new Player((byte) id, (byte) 100, (byte) score, (byte) teamId, "Player" + id);
+    }
+}
@@ -0,0 +1,139 @@
+package net.lasertag.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+public class UdpMessageDecoderTest {
+
+    private static final int WARMUP = 10_000;
+    private static final int ITERATIONS = 100_000;
+
+    private final UdpMessageDecoder decoder = new UdpMessageDecoder();
+
+    @Test
+    public void decodesFullStats() {
+        var buffer = ByteBuffer.allocate(512);
+        UdpMessageEncoder.encodeFullStats(buffer, true, false, roster(3), 7);
+        buffer.flip();
+
+        var message = (StatsMessage) decoder.decode(buffer);
+
+        assertTrue(message.isGameRunning());
+        assertEquals(3, message.getNumPlayers());
+        assertEquals(7, message.getSequence());
+        assertEquals("Player2", message.getPlayers()[1].getName());
+        assertEquals(2, message.getPlayers()[1].getId());
+    }
+
+    @Test
+    public void recyclesMessagesAfterPoolSize() {
+        var buffer = ByteBuffer.allocate(64);
+        UdpMessageEncoder.encodeEvent(buffer, UdpMessages.GOT_HIT, (byte) 2, (byte) 80, (byte) 3, (byte) 17);
+        buffer.flip();
+
+        var first = decoder.decode(buffer.duplicate());
+        for (int i = 1; i < UdpMessageDecoder.POOL_SIZE; i++) {
+            decoder.decode(buffer.duplicate());
+        }
+
+        assertSame(first, decoder.decode(buffer.duplicate()));
+    }
+
+    @Test
+    public void keepsEarlierPingRepliesIntact() {
+        var buffer = ByteBuffer.allocate(64);
+        UdpMessageEncoder.encodePong(buffer, (byte) 1, false, 5, 1000, 1100);
+        buffer.flip();
+        var first = (AckMessage) decoder.decode(buffer);
+
+        buffer.clear();
+        UdpMessageEncoder.encodePong(buffer, (byte) 1, false, 6, 2000, 2100);
+        buffer.flip();
+        var second = (AckMessage) decoder.decode(buffer);
+
+        assertEquals(5, first.getSequence());
+        assertEquals(1000, first.getServerReceiveMicros());
+        assertEquals(6, second.getSequence());
+        assertEquals(2100, second.getServerTransmitMicros());
+    }
+
+    @Test
+    public void rejectsTruncatedAndUnknownDatagrams() {
+        var buffer = ByteBuffer.allocate(512);
+        UdpMessageEncoder.encodeFullStats(buffer, true, false, roster(3), 7);
+        buffer.flip();
+        buffer.limit(buffer.limit() - 10);
+
+        assertNull(decoder.decode(buffer));
+        assertNull(decoder.decode(ByteBuffer.wrap(new byte[]{(byte) 0xEE, 1, 2})));
+    }
+
+    @Test
+    public void steadyStateFullStatsDecodingDoesNotAllocate() {
+        var buffer = ByteBuffer.allocate(4096);
+        UdpMessageEncoder.encodeFullStats(buffer, true, true, roster(32), 1);
+        buffer.flip();
+
+        assertNoAllocationPerDecode(allocatedBytes(buffer));
+    }
+
+    @Test
+    public void steadyStateEventAndTimerDecodingDoesNotAllocate() {
+        var event = ByteBuffer.allocate(64);
+        UdpMessageEncoder.encodeEvent(event, UdpMessages.YOU_KILLED, (byte) 4, (byte) 0, (byte) 3, (byte) 0);
+        event.flip();
+        var timer = ByteBuffer.allocate(64);
+        UdpMessageEncoder.encodeTime(timer, (byte) 4, (byte) 59, 123_456_789L);
+        timer.flip();
+
+        assertNoAllocationPerDecode(allocatedBytes(event));
+        assertNoAllocationPerDecode(allocatedBytes(timer));
+    }
+
+    /**
+     * The smallest object is 16 bytes, so anything allocated per decode adds up to well over a byte per
+     * iteration. What stays below that is the JIT rematerializing objects once on deoptimization.
+     */
+    private static void assertNoAllocationPerDecode(long allocatedBytes) {
+        assertTrue("allocated " + allocatedBytes + " bytes in " + ITERATIONS + " decodes", allocatedBytes < ITERATIONS);
+    }
+
+    /**
+     * Bytes the current thread allocated while decoding the datagram {@link #ITERATIONS} times, after
+     * the pools and the name cache were warmed up.
+     */
+    private long allocatedBytes(ByteBuffer datagram) {
+        var threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        var allocation = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled());
+
+        var start = datagram.position();
+        for (int i = 0; i < WARMUP; i++) {
+            datagram.position(start);
+            decoder.decode(datagram);
+        }
+        var before = allocation.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            datagram.position(start);
+            decoder.decode(datagram);
+        }
+        return allocation.getCurrentThreadAllocatedBytes() - before;
+    }
+
+    private static Player[] roster(int size) {
+        var players = new Player[size];
+        for (int i = 0; i < size; i++) {
+            players[i] = new Player((byte) (i + 1), (byte) (100 - i), (byte) i, (byte) (1 + i % 2), "Player" + (i + 1));
+        }
+        return players;
+    }
+}
@@ -21,3 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "LasertagPlayer"
 include(":app")
+include(":protocol")
+include(":benchmark")
+include(":simulator")
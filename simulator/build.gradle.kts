@@ -0,0 +1,28 @@
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    implementation(project(":protocol"))
+    testImplementation(libs.junit)
+}
+
+application {
+    mainClass.set("net.lasertag.simulator.GameServerSimulator")
+}
+
+tasks.register<JavaExec>("loadClient") {
+    group = "application"
+    description = "Runs headless clients against a game server"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("net.lasertag.simulator.LoadClient")
+}
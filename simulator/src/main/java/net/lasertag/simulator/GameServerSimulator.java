@@ -0,0 +1,300 @@
+package net.lasertag.simulator;
+
+import static net.lasertag.model.UdpMessages.*;
+
+import net.lasertag.model.Player;
+import net.lasertag.model.StatsMessage;
+import net.lasertag.model.UdpMessageEncoder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for the arena server. Answers PINGs on the server port, and pushes FULL_STATS, GAME_TIMER
+ * and per-player events to every client that pinged it, through a link with configurable loss,
+ * duplication and jitter. With --reliable, state-changing events are resent until the client's
+ * heartbeat acknowledges them.
+ * <p>
+ * Usage: --scenario deathmatch32|team-respawn|duel|arena200 [--players n] [--event-rate hits/s]
+ * [--stats-rate n/s] [--loss 0..1] [--duplicate 0..1] [--jitter ms] [--sequenced] [--reliable]
+ * [--port 9878] [--target host:port --target-player id] [--countdown s] [--timer-interval-ms ms] [--duration s]
+ */
+public class GameServerSimulator {
+
+    /** A connected app, with the per-type sequence numbers of what it has been sent so far. */
+    private static class Client {
+        final SocketAddress address;
+        final int[] sequences = new int[256];
+        final ReliableOutbox outbox = new ReliableOutbox();
+
+        Client(SocketAddress address) {
+            this.address = address;
+        }
+    }
+
+    private static final long TICK_MILLIS = 20;
+    private static final long REPORT_MILLIS = 5000;
+
+    private final Scenario scenario;
+    private final boolean sequenced;
+    private final boolean reliable;
+    private final long countdownMillis;
+    private final DatagramChannel channel;
+    private final LossyLink link;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Map<Integer, Client> clients = new ConcurrentHashMap<>();
+    private final Match match;
+    private final ByteBuffer out = ByteBuffer.allocate(8192).order(ByteOrder.LITTLE_ENDIAN);
+
+    private long lastTick;
+    private long nextStatsAt;
+    private long nextTimerAt;
+    private final long timerIntervalMillis;
+    private boolean timerRunning = false;
+    private long countdownEndsAt;
+    private int statsSequence = 0;
+    private int snapshotId = 0;
+    private long received = 0;
+
+    GameServerSimulator(Options options) throws IOException {
+        scenario = Scenario.byName(options.get("scenario", "deathmatch32"));
+        scenario.players = options.getInt("players", scenario.players);
+        scenario.eventRate = options.getDouble("event-rate", scenario.eventRate);
+        scenario.statsRate = options.getDouble("stats-rate", scenario.statsRate);
+        scenario.respawnMillis = options.getLong("respawn-ms", scenario.respawnMillis);
+        scenario.matchMillis = options.getLong("match-s", scenario.matchMillis / 1000) * 1000;
+        sequenced = options.has("sequenced");
+        reliable = options.has("reliable");
+        countdownMillis = options.getLong("countdown", 10) * 1000;
+        timerIntervalMillis = options.getLong("timer-interval-ms", 5000);
+
+        channel = DatagramChannel.open();
+        channel.setOption(java.net.StandardSocketOptions.SO_BROADCAST, true);
+        channel.bind(new InetSocketAddress(options.getInt("port", SERVER_PORT)));
+        link = new LossyLink(channel, scheduler, options.getDouble("loss", 0), options.getDouble("duplicate", 0), options.getLong("jitter", 0));
+        match = new Match(scenario, new Random(options.getLong("seed", System.nanoTime())), this::sendEvent);
+
+        if (options.has("target")) {
+            var target = options.get("target", "127.0.0.1").split(":");
+            var port = target.length > 1 ? Integer.parseInt(target[1]) : CLIENT_PORT;
+            clients.put(options.getInt("target-player", 1), new Client(new InetSocketAddress(target[0], port)));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = new Options(args);
+        var simulator = new GameServerSimulator(options);
+        simulator.start();
+        if (options.has("duration")) {
+            Thread.sleep(options.getLong("duration", 60) * 1000);
+            simulator.report();
+            System.exit(0);
+        }
+    }
+
+    void start() {
+        long now = System.currentTimeMillis();
+        lastTick = now;
+        countdownEndsAt = now + countdownMillis;
+        System.out.println("Scenario " + scenario.name + ": " + scenario.players + " players, "
+                + scenario.eventRate + " hits/s, " + scenario.statsRate + " stats/s, listening on " + localAddress());
+        var receiver = new Thread(this::receiveLoop, "receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+        scheduler.scheduleAtFixedRate(this::tick, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::report, REPORT_MILLIS, REPORT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private String localAddress() {
+        try {
+            return String.valueOf(channel.getLocalAddress());
+        } catch (IOException e) {
+            return "?";
+        }
+    }
+
+    private void receiveLoop() {
+        var buffer = ByteBuffer.allocate(2048).order(ByteOrder.LITTLE_ENDIAN);
+        while (true) {
+            try {
+                buffer.clear();
+                var sender = channel.receive(buffer);
+                buffer.flip();
+                received++;
+                var type = buffer.get();
+                if (type == PING && buffer.remaining() >= 1) {
+                    var playerId = buffer.get() & 0xFF;
+                    var client = clients.get(playerId);
+                    if (client == null || !client.address.equals(sender)) {
+                        client = new Client(sender);
+                        clients.put(playerId, client);
+                        System.out.println("Player " + playerId + " connected from " + sender);
+                    }
+                    // echo the heartbeat, including the sequence the app measures its RTT with, and
+                    // stamp sequenced ones with receive and transmit times for the app's clock sync
+                    var receivedMicros = serverMicros();
+                    var ping = ByteBuffer.allocate(buffer.limit()).put(buffer.rewind()).flip();
+                    var acked = client;
+                    scheduler.execute(() -> {
+                        onAck(acked, ping);
+                        sendPong(ping, sender, receivedMicros);
+                    });
+                } else if (type == STATS_RESYNC && buffer.remaining() >= 1) {
+                    var client = clients.get(buffer.get() & 0xFF);
+                    if (client != null) {
+                        scheduler.execute(() -> sendStats(client));
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Receive failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private synchronized void tick() {
+        long now = System.currentTimeMillis();
+        if (!match.running && now >= countdownEndsAt) {
+            match.start(now);
+        }
+        match.tick(now, (now - lastTick) / 1000.0);
+        lastTick = now;
+        if (!match.running && countdownEndsAt < now) {
+            // match just ended, idle through the next countdown
+            countdownEndsAt = now + countdownMillis;
+        }
+        if (reliable) {
+            for (var client : clients.values()) {
+                client.outbox.retransmitDue(now, frame -> link.send(frame, client.address));
+            }
+        }
+        if (now >= nextStatsAt) {
+            nextStatsAt = now + (long) (1000 / scenario.statsRate);
+            statsSequence = (statsSequence + 1) & 0xFFFF;
+            for (var client : clients.values()) {
+                sendStats(client);
+            }
+        }
+        if (now >= nextTimerAt || match.running != timerRunning) {
+            // the timer is anchored to the server clock, so apps count down locally in between
+            nextTimerAt = now + timerIntervalMillis;
+            timerRunning = match.running;
+            long endsAt = match.running ? match.endsAt : countdownEndsAt;
+            int seconds = match.running ? match.secondsLeft(now) : (int) Math.max(0, (countdownEndsAt - now) / 1000);
+            long endsAtMicros = serverMicros() + Math.max(0, endsAt - now) * 1000;
+            for (var client : clients.values()) {
+                beginMessage(client, GAME_TIMER);
+                UdpMessageEncoder.encodeTime(out, (byte) (seconds / 60), (byte) (seconds % 60), endsAtMicros);
+                send(client.address);
+            }
+        }
+    }
+
+    /**
+     * Heartbeats that carry [u16 latest id, u32 bitmap] after the sequence acknowledge reliable messages.
+     */
+    private synchronized void onAck(Client client, ByteBuffer ping) {
+        if (ping.remaining() >= 11) {
+            ping.order(ByteOrder.LITTLE_ENDIAN);
+            client.outbox.acknowledge(ping.getShort(5) & 0xFFFF, ping.getInt(7) & 0xFFFFFFFFL);
+        }
+    }
+
+    private synchronized void sendPong(ByteBuffer ping, SocketAddress address, long receivedMicros) {
+        if (ping.remaining() < 5) {
+            link.send(ping, address);
+            return;
+        }
+        ping.order(ByteOrder.LITTLE_ENDIAN);
+        out.clear();
+        UdpMessageEncoder.encodePong(out, ping.get(1), ping.get(2) != 0, ping.getShort(3) & 0xFFFF, receivedMicros, serverMicros());
+        send(address);
+    }
+
+    private static long serverMicros() {
+        return System.nanoTime() / 1000;
+    }
+
+    /**
+     * Rosters that do not fit {@link #STATS_FRAGMENT_MAX_BYTES} go out as FULL_STATS_FRAGMENTs.
+     */
+    private synchronized void sendStats(Client client) {
+        var roster = match.roster;
+        var sequence = sequenced ? statsSequence : StatsMessage.NO_SEQUENCE;
+        if (UdpMessageEncoder.fitPlayers(roster, 0, STATS_FRAGMENT_MAX_BYTES) == roster.length) {
+            beginMessage(client, FULL_STATS);
+            UdpMessageEncoder.encodeFullStats(out, match.running, scenario.teamPlay, roster, sequence);
+            send(client.address);
+            return;
+        }
+        var fragmentCount = 0;
+        for (int first = 0; first < roster.length; fragmentCount++) {
+            first += UdpMessageEncoder.fitPlayers(roster, first, STATS_FRAGMENT_MAX_BYTES);
+        }
+        snapshotId = (snapshotId + 1) & 0xFFFF;
+        var first = 0;
+        for (int fragment = 0; fragment < fragmentCount; fragment++) {
+            var count = UdpMessageEncoder.fitPlayers(roster, first, STATS_FRAGMENT_MAX_BYTES);
+            beginMessage(client, FULL_STATS_FRAGMENT);
+            UdpMessageEncoder.encodeStatsFragment(out, snapshotId, fragment, fragmentCount, match.running,
+                    scenario.teamPlay, roster, first, count, sequence);
+            send(client.address);
+            first += count;
+        }
+    }
+
+    private void sendEvent(Player recipient, byte type, int counterpartId, int bulletsLeft) {
+        var client = clients.get(recipient.getId() & 0xFF);
+        if (client == null) {
+            return;
+        }
+        beginMessage(client, type);
+        UdpMessageEncoder.encodeEvent(out, type, (byte) counterpartId, recipient.getHealth(), recipient.getScore(), (byte) bulletsLeft);
+        if (reliable && isReliableType(type)) {
+            out.flip();
+            link.send(client.outbox.frame(out, System.currentTimeMillis()), client.address);
+        } else {
+            send(client.address);
+        }
+    }
+
+    private void beginMessage(Client client, byte type) {
+        out.clear();
+        if (sequenced) {
+            var t = type & 0xFF;
+            UdpMessageEncoder.encodeSequenceHeader(out, client.sequences[t]);
+            client.sequences[t] = (client.sequences[t] + 1) & 0xFFFF;
+        }
+    }
+
+    private void send(SocketAddress address) {
+        out.flip();
+        link.send(out, address);
+    }
+
+    private synchronized void report() {
+        System.out.printf("clients %d, received %d, sent %d, dropped %d, duplicated %d, %d bytes%n",
+                clients.size(), received, link.sent, link.dropped, link.duplicated, link.bytes);
+        if (reliable) {
+            long sent = 0, retransmitted = 0, acknowledged = 0, givenUp = 0;
+            for (var client : clients.values()) {
+                sent += client.outbox.sent;
+                retransmitted += client.outbox.retransmitted;
+                acknowledged += client.outbox.acknowledged;
+                givenUp += client.outbox.givenUp;
+            }
+            System.out.printf("reliable sent %d, retransmitted %d, acknowledged %d, given up %d%n",
+                    sent, retransmitted, acknowledged, givenUp);
+        }
+    }
+}
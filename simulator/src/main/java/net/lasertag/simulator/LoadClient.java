@@ -0,0 +1,186 @@
+package net.lasertag.simulator;
+
+import static net.lasertag.model.UdpMessages.*;
+
+import net.lasertag.model.ReliableInbox;
+import net.lasertag.model.SequenceTracker;
+import net.lasertag.model.UdpMessageDecoder;
+import net.lasertag.model.UdpMessageEncoder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * Many headless clients on one thread, each with its own socket and player id, pinging the server
+ * like the app does and decoding everything it sends back. Reports throughput, decode cost, PING
+ * round trip, sequence loss and reliable messages, which it acknowledges in its pings.
+ * <p>
+ * Usage: [--server host] [--port 9878] [--clients 32] [--first-player-id 1] [--duration s]
+ */
+public class LoadClient {
+
+    private static final long PING_INTERVAL_NANOS = 1_000_000_000L;
+    private static final long REPORT_INTERVAL_NANOS = 5_000_000_000L;
+
+    private static class VirtualClient {
+        final byte playerId;
+        final DatagramChannel channel;
+        final UdpMessageDecoder decoder = new UdpMessageDecoder();
+        final SequenceTracker sequenceTracker = new SequenceTracker();
+        final ReliableInbox reliableInbox = new ReliableInbox();
+        int pingSequence = 0;
+        long pingSentNanos = 0;
+        boolean firstPing = true;
+
+        VirtualClient(byte playerId, DatagramChannel channel) {
+            this.playerId = playerId;
+            this.channel = channel;
+        }
+    }
+
+    private final InetSocketAddress server;
+    private final VirtualClient[] clients;
+    private final Selector selector;
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(2048).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer pingBuffer = ByteBuffer.allocate(11);
+
+    private long packets = 0;
+    private long bytes = 0;
+    private long decodeNanos = 0;
+    private long undecoded = 0;
+    private long rttCount = 0;
+    private long rttTotalNanos = 0;
+    private long rttMaxNanos = 0;
+
+    LoadClient(Options options) throws IOException {
+        server = new InetSocketAddress(options.get("server", "127.0.0.1"), options.getInt("port", SERVER_PORT));
+        clients = new VirtualClient[options.getInt("clients", 32)];
+        selector = Selector.open();
+        int firstId = options.getInt("first-player-id", 1);
+        for (int i = 0; i < clients.length; i++) {
+            var channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(0));
+            channel.configureBlocking(false);
+            clients[i] = new VirtualClient((byte) (firstId + i), channel);
+            channel.register(selector, SelectionKey.OP_READ, clients[i]);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        var options = new Options(args);
+        var loadClient = new LoadClient(options);
+        long durationNanos = options.getLong("duration", Long.MAX_VALUE / 2_000_000_000L) * 1_000_000_000L;
+        System.out.println(loadClient.clients.length + " clients against " + loadClient.server);
+        loadClient.run(System.nanoTime() + durationNanos);
+    }
+
+    void run(long stopAt) throws IOException {
+        long nextPing = System.nanoTime();
+        long nextReport = nextPing + REPORT_INTERVAL_NANOS;
+        long windowStart = nextPing;
+        while (System.nanoTime() < stopAt) {
+            long now = System.nanoTime();
+            if (now >= nextPing) {
+                for (var client : clients) {
+                    ping(client, now);
+                }
+                nextPing = now + PING_INTERVAL_NANOS;
+            }
+            if (now >= nextReport) {
+                report((now - windowStart) / 1e9);
+                windowStart = now;
+                nextReport = now + REPORT_INTERVAL_NANOS;
+            }
+            selector.select(Math.max(1, (Math.min(nextPing, nextReport) - now) / 1_000_000));
+            var keys = selector.selectedKeys();
+            for (var key : keys) {
+                var client = (VirtualClient) key.attachment();
+                while (receive(client)) {
+                    // drain the socket
+                }
+            }
+            keys.clear();
+        }
+        report((System.nanoTime() - windowStart) / 1e9);
+    }
+
+    private void ping(VirtualClient client, long now) throws IOException {
+        pingBuffer.clear();
+        if (client.reliableInbox.hasReceived()) {
+            UdpMessageEncoder.encodePing(pingBuffer, client.playerId, client.firstPing, client.pingSequence,
+                    client.reliableInbox.getLatest(), client.reliableInbox.getAckBits());
+        } else {
+            UdpMessageEncoder.encodePing(pingBuffer, client.playerId, client.firstPing, client.pingSequence);
+        }
+        client.pingSequence = (client.pingSequence + 1) & 0xFFFF;
+        pingBuffer.flip();
+        client.channel.send(pingBuffer, server);
+        client.pingSentNanos = now;
+        client.firstPing = false;
+    }
+
+    private boolean receive(VirtualClient client) throws IOException {
+        receiveBuffer.clear();
+        if (client.channel.receive(receiveBuffer) == null) {
+            return false;
+        }
+        long received = System.nanoTime();
+        receiveBuffer.flip();
+        packets++;
+        bytes += receiveBuffer.remaining();
+        int reliableId = readReliableHeader(receiveBuffer);
+        if (reliableId != NO_SEQUENCE && !client.reliableInbox.accept(reliableId)) {
+            return true;
+        }
+        int sequence = readSequenceHeader(receiveBuffer);
+        if (receiveBuffer.hasRemaining() && sequence != NO_SEQUENCE
+                && !client.sequenceTracker.accept(receiveBuffer.get(receiveBuffer.position()), sequence)) {
+            return true;
+        }
+        long start = System.nanoTime();
+        var message = client.decoder.decode(receiveBuffer);
+        decodeNanos += System.nanoTime() - start;
+        if (message == null) {
+            undecoded++;
+        } else if (message.getType() == PING && client.pingSentNanos != 0) {
+            long rtt = received - client.pingSentNanos;
+            client.pingSentNanos = 0;
+            rttCount++;
+            rttTotalNanos += rtt;
+            rttMaxNanos = Math.max(rttMaxNanos, rtt);
+        }
+        return true;
+    }
+
+    private void report(double seconds) {
+        long lost = 0;
+        long duplicates = 0;
+        long reordered = 0;
+        long reliable = 0;
+        long reliableDuplicates = 0;
+        for (var client : clients) {
+            reliable += client.reliableInbox.getAccepted();
+            reliableDuplicates += client.reliableInbox.getDuplicates();
+            for (int type = 0; type < 256; type++) {
+                lost += client.sequenceTracker.getLost((byte) type);
+                duplicates += client.sequenceTracker.getDuplicates((byte) type);
+                reordered += client.sequenceTracker.getReordered((byte) type);
+            }
+        }
+        System.out.printf("%.0f pkt/s, %.0f B/s, decode avg %d ns, undecoded %d, rtt avg %.2f ms max %.2f ms, lost %d, dup %d, reordered %d, reliable %d, reliable dup %d%n",
+                packets / seconds, bytes / seconds, packets == 0 ? 0 : decodeNanos / packets, undecoded,
+                rttCount == 0 ? 0 : rttTotalNanos / rttCount / 1e6, rttMaxNanos / 1e6, lost, duplicates, reordered,
+                reliable, reliableDuplicates);
+        packets = 0;
+        bytes = 0;
+        decodeNanos = 0;
+        rttCount = 0;
+        rttTotalNanos = 0;
+        rttMaxNanos = 0;
+    }
+}
@@ -0,0 +1,63 @@
+package net.lasertag.simulator;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends datagrams with injected loss, duplication and latency jitter. Jittered packets are copied and
+ * sent later from the scheduler, so they can overtake each other like on a congested access point.
+ */
+class LossyLink {
+
+    private final DatagramChannel channel;
+    private final ScheduledExecutorService scheduler;
+    private final Random random = new Random();
+    private final double lossRate;
+    private final double duplicateRate;
+    private final long jitterMillis;
+
+    long sent = 0;
+    long dropped = 0;
+    long duplicated = 0;
+    long bytes = 0;
+
+    LossyLink(DatagramChannel channel, ScheduledExecutorService scheduler, double lossRate, double duplicateRate, long jitterMillis) {
+        this.channel = channel;
+        this.scheduler = scheduler;
+        this.lossRate = lossRate;
+        this.duplicateRate = duplicateRate;
+        this.jitterMillis = jitterMillis;
+    }
+
+    synchronized void send(ByteBuffer data, SocketAddress target) {
+        if (random.nextDouble() < lossRate) {
+            dropped++;
+            return;
+        }
+        int copies = random.nextDouble() < duplicateRate ? 2 : 1;
+        duplicated += copies - 1;
+        for (int i = 0; i < copies; i++) {
+            if (jitterMillis <= 0) {
+                transmit(data.duplicate(), target);
+            } else {
+                var copy = ByteBuffer.allocate(data.remaining()).put(data.duplicate()).flip();
+                scheduler.schedule(() -> transmit(copy, target), (long) (random.nextDouble() * jitterMillis), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private synchronized void transmit(ByteBuffer data, SocketAddress target) {
+        try {
+            bytes += data.remaining();
+            channel.send(data, target);
+            sent++;
+        } catch (IOException e) {
+            System.err.println("Send to " + target + " failed: " + e.getMessage());
+        }
+    }
+}
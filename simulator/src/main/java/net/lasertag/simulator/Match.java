@@ -0,0 +1,162 @@
+package net.lasertag.simulator;
+
+import static net.lasertag.model.UdpMessages.*;
+
+import net.lasertag.model.Player;
+
+import java.util.Random;
+
+/**
+ * Simulated match: random shooters hit random opponents at the scenario's event rate, killed players
+ * respawn after the respawn time, and the player or team with the highest score wins when time is up.
+ */
+class Match {
+
+    interface EventSink {
+        void event(Player recipient, byte type, int counterpartId, int bulletsLeft);
+    }
+
+    private static final byte FULL_HEALTH = 100;
+
+    private final Scenario scenario;
+    private final Random random;
+    private final EventSink sink;
+    final Player[] roster;
+    private final int[] bullets;
+    private final long[] respawnAt;
+    private double pendingHits = 0;
+    boolean running = false;
+    long endsAt = 0;
+
+    Match(Scenario scenario, Random random, EventSink sink) {
+        this.scenario = scenario;
+        this.random = random;
+        this.sink = sink;
+        roster = new Player[scenario.players];
+        bullets = new int[scenario.players];
+        respawnAt = new long[scenario.players];
+        for (int i = 0; i < roster.length; i++) {
+            var teamId = scenario.teamPlay ? 1 + i % scenario.teams : 0;
+            roster[i] = new Player((byte) (i + 1), FULL_HEALTH, (byte) 0, (byte) teamId, "Bot" + (i + 1));
+        }
+    }
+
+    void start(long now) {
+        running = true;
+        endsAt = now + scenario.matchMillis;
+        pendingHits = 0;
+        for (int i = 0; i < roster.length; i++) {
+            roster[i].setHealth(FULL_HEALTH);
+            roster[i].setScore((byte) 0);
+            bullets[i] = scenario.magazineSize;
+            respawnAt[i] = 0;
+            sink.event(roster[i], GAME_START, scenario.teamPlay ? 1 : 0, bullets[i]);
+            sink.event(roster[i], RESPAWN, 0, bullets[i]);
+        }
+    }
+
+    void tick(long now, double elapsedSeconds) {
+        if (!running) {
+            return;
+        }
+        for (int i = 0; i < roster.length; i++) {
+            if (roster[i].getHealth() <= 0 && now >= respawnAt[i]) {
+                roster[i].setHealth(FULL_HEALTH);
+                bullets[i] = scenario.magazineSize;
+                sink.event(roster[i], RESPAWN, 0, bullets[i]);
+            }
+        }
+        pendingHits += scenario.eventRate * elapsedSeconds;
+        while (pendingHits >= 1) {
+            pendingHits--;
+            fire(now);
+        }
+        if (now >= endsAt) {
+            finish();
+        }
+    }
+
+    int secondsLeft(long now) {
+        return (int) Math.max(0, (endsAt - now + 999) / 1000);
+    }
+
+    private void fire(long now) {
+        int shooter = randomAlive(-1);
+        if (shooter < 0) {
+            return;
+        }
+        var player = roster[shooter];
+        if (bullets[shooter] == 0) {
+            sink.event(player, GUN_NO_BULLETS, 0, 0);
+            bullets[shooter] = scenario.magazineSize;
+            sink.event(player, GUN_RELOAD, 0, bullets[shooter]);
+            return;
+        }
+        bullets[shooter]--;
+        sink.event(player, GUN_SHOT, 0, bullets[shooter]);
+        int victim = randomAlive(shooter);
+        if (victim < 0) {
+            return;
+        }
+        var target = roster[victim];
+        target.setHealth((byte) Math.max(0, target.getHealth() - 10 - random.nextInt(26)));
+        sink.event(player, YOU_HIT_SOMEONE, target.getId(), bullets[shooter]);
+        sink.event(target, GOT_HIT, player.getId(), bullets[victim]);
+        if (target.getHealth() == 0) {
+            player.setScore((byte) (player.getScore() + 1));
+            respawnAt[victim] = now + scenario.respawnMillis;
+            sink.event(target, YOU_KILLED, player.getId(), bullets[victim]);
+            sink.event(player, YOU_SCORED, target.getId(), bullets[shooter]);
+        }
+    }
+
+    /**
+     * Random living player, excluding the given index and, in team play, that player's teammates.
+     */
+    private int randomAlive(int excluded) {
+        int start = random.nextInt(roster.length);
+        for (int n = 0; n < roster.length; n++) {
+            int i = (start + n) % roster.length;
+            if (i == excluded || roster[i].getHealth() <= 0) {
+                continue;
+            }
+            if (excluded >= 0 && scenario.teamPlay && roster[i].getTeamId() == roster[excluded].getTeamId()) {
+                continue;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private void finish() {
+        running = false;
+        int winner = scenario.teamPlay ? leadingTeam() : leadingPlayer();
+        for (int i = 0; i < roster.length; i++) {
+            sink.event(roster[i], GAME_OVER, winner, bullets[i]);
+        }
+    }
+
+    private int leadingPlayer() {
+        int best = 0;
+        for (int i = 1; i < roster.length; i++) {
+            if (roster[i].getScore() > roster[best].getScore()) {
+                best = i;
+            }
+        }
+        return roster[best].getId();
+    }
+
+    private int leadingTeam() {
+        var totals = new int[scenario.teams + 1];
+        for (Player player : roster) {
+            totals[player.getTeamId()] += player.getScore();
+        }
+        int best = 1;
+        for (int t = 2; t <= scenario.teams; t++) {
+            if (totals[t] > totals[best]) {
+                best = t;
+            }
+        }
+        return best;
+    }
+}
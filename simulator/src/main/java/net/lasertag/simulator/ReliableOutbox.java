@@ -0,0 +1,100 @@
+package net.lasertag.simulator;
+
+import net.lasertag.model.ReliableInbox;
+import net.lasertag.model.UdpMessageEncoder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.Consumer;
+
+/**
+ * Sending end of the reliable channel for one client. Each message is framed with a fresh id and kept
+ * until the client's heartbeat acknowledges it, and resent every {@link #RETRANSMIT_MILLIS} until
+ * then, giving up after {@link #MAX_ATTEMPTS}. At most {@link ReliableInbox#ACK_WINDOW} messages are
+ * in flight; a newer one pushes out the oldest, which counts as given up. Not thread-safe.
+ */
+class ReliableOutbox {
+
+    static final long RETRANSMIT_MILLIS = 250;
+    static final int MAX_ATTEMPTS = 12;
+
+    private static final int SLOTS = ReliableInbox.ACK_WINDOW;
+    private static final int MAX_MESSAGE_SIZE = 256;
+
+    private final ByteBuffer[] frames = new ByteBuffer[SLOTS];
+    private final int[] ids = new int[SLOTS];
+    private final long[] sentAt = new long[SLOTS];
+    private final int[] attempts = new int[SLOTS];
+    private final boolean[] inFlight = new boolean[SLOTS];
+    private int nextId = 0;
+
+    long sent = 0;
+    long retransmitted = 0;
+    long acknowledged = 0;
+    long givenUp = 0;
+
+    ReliableOutbox() {
+        for (int i = 0; i < SLOTS; i++) {
+            frames[i] = ByteBuffer.allocate(MAX_MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Frames the message between the buffer's position and limit, and returns the frame to send now.
+     */
+    ByteBuffer frame(ByteBuffer message, long now) {
+        var id = nextId;
+        nextId = (nextId + 1) & 0xFFFF;
+        var slot = id % SLOTS;
+        if (inFlight[slot]) {
+            givenUp++;
+        }
+        var frame = frames[slot];
+        frame.clear();
+        UdpMessageEncoder.encodeReliableHeader(frame, id);
+        frame.put(message);
+        frame.flip();
+        ids[slot] = id;
+        sentAt[slot] = now;
+        attempts[slot] = 1;
+        inFlight[slot] = true;
+        sent++;
+        return frame.duplicate();
+    }
+
+    /**
+     * Applies the ack a heartbeat carried: the newest id the client has and a bitmap of the ones before.
+     */
+    void acknowledge(int latest, long ackBits) {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (!inFlight[slot]) {
+                continue;
+            }
+            var behind = (latest - ids[slot]) & 0xFFFF;
+            if (behind == 0 || (behind <= SLOTS && (ackBits & (1L << (behind - 1))) != 0)) {
+                inFlight[slot] = false;
+                acknowledged++;
+            }
+        }
+    }
+
+    /**
+     * Hands every message whose retransmit time has come to the sender.
+     */
+    void retransmitDue(long now, Consumer<ByteBuffer> sender) {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (!inFlight[slot] || now - sentAt[slot] < RETRANSMIT_MILLIS) {
+                continue;
+            }
+            if (attempts[slot] >= MAX_ATTEMPTS) {
+                inFlight[slot] = false;
+                givenUp++;
+                continue;
+            }
+            attempts[slot]++;
+            sentAt[slot] = now;
+            retransmitted++;
+            sender.accept(frames[slot].duplicate());
+        }
+    }
+}
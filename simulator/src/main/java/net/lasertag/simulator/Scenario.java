@@ -0,0 +1,42 @@
+package net.lasertag.simulator;
+
+/**
+ * Shape of a simulated match. Options given on the command line override the scenario defaults.
+ */
+public class Scenario {
+
+    final String name;
+    int players;
+    boolean teamPlay;
+    int teams;
+    /** Hits per second across the whole arena. */
+    double eventRate;
+    /** FULL_STATS snapshots per second. */
+    double statsRate;
+    long respawnMillis;
+    long matchMillis;
+    int magazineSize;
+
+    private Scenario(String name, int players, boolean teamPlay, int teams, double eventRate, double statsRate,
+                     long respawnMillis, long matchMillis, int magazineSize) {
+        this.name = name;
+        this.players = players;
+        this.teamPlay = teamPlay;
+        this.teams = teams;
+        this.eventRate = eventRate;
+        this.statsRate = statsRate;
+        this.respawnMillis = respawnMillis;
+        this.matchMillis = matchMillis;
+        this.magazineSize = magazineSize;
+    }
+
+    static Scenario byName(String name) {
+        return switch (name) {
+            case "deathmatch32" -> new Scenario(name, 32, false, 0, 20, 4, 10_000, 8 * 60_000, 30);
+            case "team-respawn" -> new Scenario(name, 16, true, 4, 12, 4, 2_000, 8 * 60_000, 20);
+            case "duel" -> new Scenario(name, 2, false, 0, 2, 2, 5_000, 3 * 60_000, 10);
+            case "arena200" -> new Scenario(name, 200, true, 4, 60, 2, 5_000, 10 * 60_000, 30);
+            default -> throw new IllegalArgumentException("Unknown scenario " + name + ", expected deathmatch32, team-respawn, duel or arena200");
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package net.lasertag.simulator;
+
+import static org.junit.Assert.assertEquals;
+
+import net.lasertag.model.ReliableInbox;
+import net.lasertag.model.UdpMessageEncoder;
+import net.lasertag.model.UdpMessages;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Runs the reliable channel end to end over a link that drops datagrams in both directions, on a
+ * simulated clock: the outbox on the server side, the inbox on the client side acknowledging right
+ * away and with every heartbeat, the way the service does.
+ */
+public class ReliableOutboxTest {
+
+    private static final long STEP_MILLIS = 10;
+    private static final long HEARTBEAT_MILLIS = 100;
+    private static final long MESSAGE_INTERVAL_MILLIS = 100;
+
+    private final Random random = new Random(42);
+    private final ReliableInbox inbox = new ReliableInbox();
+    private final ByteBuffer message = ByteBuffer.allocate(16);
+    private double lossRate;
+    private int[] deliveries;
+    private long now = 0;
+
+    @Test
+    public void deliversEveryMessageOnceDespiteLoss() {
+        lossRate = 0.3;
+        var outbox = new ReliableOutbox();
+
+        run(outbox, 200);
+
+        assertDeliveredOnce(200);
+        assertEquals(200, outbox.acknowledged);
+        assertEquals(0, outbox.givenUp);
+    }
+
+    @Test
+    public void deliversEveryMessageAfterServerRestart() {
+        lossRate = 0.3;
+        run(new ReliableOutbox(), 200);
+
+        var restarted = new ReliableOutbox();
+        run(restarted, 100);
+
+        assertDeliveredOnce(100);
+        assertEquals(100, restarted.acknowledged);
+        assertEquals(0, restarted.givenUp);
+    }
+
+    @Test
+    public void givesUpWhenNothingGetsThrough() {
+        lossRate = 1;
+        var outbox = new ReliableOutbox();
+
+        run(outbox, 1);
+
+        assertEquals(0, outbox.acknowledged);
+        assertEquals(1, outbox.givenUp);
+        assertEquals(ReliableOutbox.MAX_ATTEMPTS - 1, outbox.retransmitted);
+    }
+
+    /**
+     * Sends count messages, then keeps the clock running until the outbox has nothing left in flight.
+     */
+    private void run(ReliableOutbox outbox, int count) {
+        deliveries = new int[count];
+        var end = now + count * MESSAGE_INTERVAL_MILLIS + ReliableOutbox.MAX_ATTEMPTS * ReliableOutbox.RETRANSMIT_MILLIS;
+        var sent = 0;
+        for (var start = now; now < end; now += STEP_MILLIS) {
+            if (sent < count && now - start >= sent * MESSAGE_INTERVAL_MILLIS) {
+                message.clear();
+                UdpMessageEncoder.encodeEvent(message, UdpMessages.YOU_KILLED, (byte) 2, (byte) 0, (byte) 0, (byte) sent);
+                message.flip();
+                transmit(outbox, outbox.frame(message, now));
+                sent++;
+            }
+            outbox.retransmitDue(now, frame -> transmit(outbox, frame));
+            if (now % HEARTBEAT_MILLIS == 0) {
+                acknowledge(outbox);
+            }
+        }
+    }
+
+    private void transmit(ReliableOutbox outbox, ByteBuffer frame) {
+        if (random.nextDouble() < lossRate) {
+            return;
+        }
+        var id = UdpMessages.readReliableHeader(frame);
+        if (inbox.accept(id)) {
+            deliveries[frame.get(frame.limit() - 1) & 0xFF]++;
+        }
+        acknowledge(outbox);
+    }
+
+    private void acknowledge(ReliableOutbox outbox) {
+        if (inbox.hasReceived() && random.nextDouble() >= lossRate) {
+            outbox.acknowledge(inbox.getLatest(), inbox.getAckBits());
+        }
+    }
+
+    private void assertDeliveredOnce(int count) {
+        for (int i = 0; i < count; i++) {
+            assertEquals("message " + i, 1, deliveries[i]);
+        }
+    }
+}